@@ -0,0 +1,123 @@
+package org.robo.bench;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.robo.core.CellReader;
+import org.robo.core.ExcelProcessor;
+import org.robo.core.WorkbookCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH suite for reading every cell of a formula-heavy template sheet: one
+ * {@link ExcelProcessor#getCellValue} call per cell, each with its own formatter and
+ * evaluator, against one {@link CellReader} for the whole scan, plus processAll end to end.
+ * A scan takes seconds, so each iteration is a single shot. The default of 2000 rows keeps a
+ * run to a few minutes; pass -p rows=50000 for production-sized sheets, where one shot of
+ * getCellValuePerCell alone takes about four minutes.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class CellReaderBenchmark {
+
+    private static final int COLUMNS = 9;
+
+    @Param({"2000"})
+    public int rows;
+
+    private XSSFWorkbook workbook;
+    private Sheet sheet;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workbook = new XSSFWorkbook();
+        sheet = workbook.createSheet("Main");
+        CellStyle date = workbook.createCellStyle();
+        date.setDataFormat(workbook.createDataFormat().getFormat("dd/mm/yyyy"));
+        CellStyle decimal = workbook.createCellStyle();
+        decimal.setDataFormat(workbook.createDataFormat().getFormat("#,##0.00"));
+
+        String[] headers = {"Name", "M##Amount", "M##DOB", "M##Total", "M##Label", "M##Expiry", "M##Flag", "M##Running", "Notes"};
+        Row header = sheet.createRow(0);
+        for (int c = 0; c < headers.length; c++) header.createCell(c).setCellValue(headers[c]);
+        for (int r = 1; r <= rows; r++) {
+            Row row = sheet.createRow(r);
+            int n = r + 1;
+            row.createCell(0).setCellValue("Scenario" + r);
+            row.createCell(1).setCellValue(r * 1.25);
+            row.createCell(2).setCellValue(25000 + r % 20000);
+            row.getCell(2).setCellStyle(date);
+            row.createCell(3).setCellFormula("B" + n + "*1.07");
+            row.getCell(3).setCellStyle(decimal);
+            row.createCell(4).setCellFormula("A" + n + "&\"-\"&TEXT(B" + n + ",\"0\")");
+            row.createCell(5).setCellFormula("C" + n + "+365");
+            row.getCell(5).setCellStyle(date);
+            row.createCell(6).setCellFormula("B" + n + ">1000");
+            // every row reads the same block, which an evaluator computes once and then caches
+            row.createCell(7).setCellFormula("D" + n + "+SUM($B$2:$B$101)");
+            row.createCell(8).setCellValue("note " + r);
+        }
+        file = Files.createTempFile("cell-reader-bench", ".xlsx").toFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            workbook.write(out);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        workbook.close();
+        WorkbookCache.shared().invalidate(file);
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public void getCellValuePerCell(Blackhole bh) {
+        for (int r = 1; r <= rows; r++) {
+            Row row = sheet.getRow(r);
+            for (int c = 0; c < COLUMNS; c++) bh.consume(ExcelProcessor.getCellValue(row.getCell(c)));
+        }
+    }
+
+    @Benchmark
+    public void cellReaderPerScan(Blackhole bh) {
+        CellReader cells = new CellReader(workbook);
+        for (int r = 1; r <= rows; r++) {
+            Row row = sheet.getRow(r);
+            for (int c = 0; c < COLUMNS; c++) bh.consume(cells.read(row.getCell(c)));
+        }
+    }
+
+    // parse, template compile and generation; the file is re-read every time
+    @Benchmark
+    public int processAll() throws IOException {
+        WorkbookCache.shared().invalidate(file);
+        return ExcelProcessor.processAll(file, "Main", null, Collections.emptySet(), Writer.nullWriter());
+    }
+}
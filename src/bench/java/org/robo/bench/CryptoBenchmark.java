@@ -0,0 +1,138 @@
+package org.robo.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.robo.core.ChunkedFileCipher;
+import org.robo.core.CryptoUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH suite for the file encryption paths in {@link CryptoUtil} and {@link ChunkedFileCipher},
+ * at payload sizes from 1 KiB to 1 GiB, and hex parsing up to 64 Mi characters. Run a subset
+ * with e.g. {@code org.openjdk.jmh.Main CryptoBenchmark -p payloadBytes=1048576}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CryptoBenchmark {
+
+    private static final byte[] KEY = "0123456789abcdef0123456789abcdef".getBytes();
+    private static final byte[] IV = "abcdef0123456789".getBytes();
+
+    @State(Scope.Benchmark)
+    public static class Payload {
+        @Param({"1024", "1048576", "67108864", "1073741824"})
+        public long payloadBytes;
+
+        public File input;
+        public File output;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            input = File.createTempFile("crypto-bench", ".bin");
+            output = File.createTempFile("crypto-bench", ".enc");
+            byte[] chunk = new byte[(int) Math.min(payloadBytes, 1024 * 1024)];
+            Random random = new Random(42);
+            try (OutputStream out = new FileOutputStream(input)) {
+                for (long written = 0; written < payloadBytes; written += chunk.length) {
+                    random.nextBytes(chunk);
+                    out.write(chunk, 0, (int) Math.min(chunk.length, payloadBytes - written));
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            input.delete();
+            output.delete();
+        }
+    }
+
+    /**
+     * Hex text of hexChars characters, optionally with a colon between byte pairs. Capped at
+     * 64 Mi: the text is a String in memory, and 1 Gi characters would not fit the fork's heap.
+     */
+    @State(Scope.Benchmark)
+    public static class HexInput {
+        @Param({"1024", "1048576", "67108864"})
+        public int hexChars;
+
+        @Param({"false", "true"})
+        public boolean separated;
+
+        public String hex;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            char[] digits = "0123456789abcdef".toCharArray();
+            Random random = new Random(42);
+            int pairs = hexChars / 2;
+            StringBuilder sb = new StringBuilder(separated ? pairs * 3 : pairs * 2);
+            for (int i = 0; i < pairs; i++) {
+                if (separated && i > 0) sb.append(':');
+                sb.append(digits[random.nextInt(16)]).append(digits[random.nextInt(16)]);
+            }
+            hex = sb.toString();
+        }
+    }
+
+    @Benchmark
+    public void aesCbc(Payload p) throws Exception {
+        CryptoUtil.encryptFileAES_CBC(KEY, IV, p.input, p.output);
+    }
+
+    @Benchmark
+    public void aesEcb(Payload p) throws Exception {
+        CryptoUtil.encryptFileAES_CBC(KEY, null, p.input, p.output);
+    }
+
+    @Benchmark
+    public void aesGcmFramed(Payload p) throws Exception {
+        CryptoUtil.encryptFileAES_GCM(KEY, p.input, p.output);
+    }
+
+    @Benchmark
+    public void chunkedGcm(Payload p) throws Exception {
+        ChunkedFileCipher.encrypt(KEY, ChunkedFileCipher.Mode.GCM, p.input, p.output);
+    }
+
+    @Benchmark
+    public void chunkedCtr(Payload p) throws Exception {
+        ChunkedFileCipher.encrypt(KEY, ChunkedFileCipher.Mode.CTR, p.input, p.output);
+    }
+
+    // The Base64 stage of encryptFileAES_CBC on its own
+    @Benchmark
+    public void base64Wrap(Payload p) throws Exception {
+        try (InputStream in = new FileInputStream(p.input);
+             OutputStream out = Base64.getEncoder().wrap(OutputStream.nullOutputStream())) {
+            in.transferTo(out);
+        }
+    }
+
+    @Benchmark
+    public byte[] hexStringToBytes(HexInput h) {
+        return CryptoUtil.hexStringToBytes(h.hex);
+    }
+}
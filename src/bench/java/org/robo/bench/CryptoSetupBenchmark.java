@@ -0,0 +1,61 @@
+package org.robo.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.robo.core.CipherPool;
+import org.robo.core.CryptoUtil;
+import org.robo.core.PasswordKeyCache;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH suite for the fixed per-file costs: PBKDF2 stretching and getting an initialised
+ * cipher, either from {@code Cipher.getInstance} or from the {@link CipherPool}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CryptoSetupBenchmark {
+
+    private final SecretKeySpec key = new SecretKeySpec("0123456789abcdef0123456789abcdef".getBytes(), "AES");
+    private final IvParameterSpec iv = new IvParameterSpec("abcdef0123456789".getBytes());
+    private final byte[] salt = new byte[16];
+    private final CipherPool pool = new CipherPool(CipherPool.DEFAULT_MAX_IDLE_PER_KEY);
+
+    // A fresh cache each call, so every call pays the full stretch
+    @Benchmark
+    public void pbkdf2(Blackhole bh) throws Exception {
+        try (PasswordKeyCache.MasterKey master = new PasswordKeyCache(1, 0)
+                .forSalt("correct horse battery staple", salt, CryptoUtil.PBKDF2_ITERATIONS)) {
+            bh.consume(master.getSalt());
+        }
+    }
+
+    @Benchmark
+    public Cipher cipherGetInstance() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+        return cipher;
+    }
+
+    @Benchmark
+    public int cipherPoolBorrow() throws Exception {
+        try (CipherPool.Lease lease = pool.borrow("AES/CBC/PKCS5Padding", Cipher.ENCRYPT_MODE, key, iv)) {
+            return lease.cipher().getBlockSize();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.robo.bench;
+
+import org.robo.core.JschSftpTransport;
+import org.robo.core.SftpSessionPool;
+import org.robo.core.SftpTarget;
+import org.robo.core.SftpTransport;
+import org.robo.core.SftpUtil;
+import org.robo.core.SshjSftpTransport;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Uploads the same file through each SFTP transport and prints the throughput.
+ *
+ * <p>Usage: {@code SftpTransportBenchmark host port user password [sizeMiB] [rounds] [remoteDir]}.
+ * Point it at a local server (e.g. OpenSSH on localhost); to see the effect of
+ * pipelining, add latency to the loopback interface first, e.g.
+ * {@code tc qdisc add dev lo root netem delay 20ms}.</p>
+ */
+public class SftpTransportBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Usage: SftpTransportBenchmark host port user password [sizeMiB] [rounds] [remoteDir]");
+            System.exit(2);
+        }
+        SftpTarget target = SftpTarget.withPassword(args[0], Integer.parseInt(args[1]), args[2], args[3]);
+        int sizeMiB = args.length > 4 ? Integer.parseInt(args[4]) : 32;
+        int rounds = args.length > 5 ? Integer.parseInt(args[5]) : 5;
+        String remoteDir = args.length > 6 ? args[6] : "sftp-bench";
+
+        File file = File.createTempFile("sftp-bench", ".bin");
+        file.deleteOnExit();
+        byte[] data = new byte[sizeMiB * 1024 * 1024];
+        new Random(42).nextBytes(data);
+        Files.write(file.toPath(), data);
+
+        Map<String, SftpTransport> transports = new LinkedHashMap<>();
+        transports.put("jsch", new JschSftpTransport());
+        // one outstanding write is stop-and-wait, the same as JSch
+        transports.put("sshj (1 in flight)", new SshjSftpTransport(1));
+        transports.put("sshj (" + SshjSftpTransport.DEFAULT_MAX_UNCONFIRMED_WRITES + " in flight)", new SshjSftpTransport());
+
+        System.out.printf(Locale.ROOT, "%d MiB x %d rounds to %s%n", sizeMiB, rounds, target);
+        for (Map.Entry<String, SftpTransport> entry : transports.entrySet()) {
+            try (SftpSessionPool pool = new SftpSessionPool(entry.getValue(), 1, SftpSessionPool.DEFAULT_IDLE_TIMEOUT_MS,
+                    SftpSessionPool.DEFAULT_KEEP_ALIVE_MS, SftpSessionPool.DEFAULT_CONNECT_TIMEOUT_MS,
+                    SftpSessionPool.DEFAULT_BORROW_TIMEOUT_MS)) {
+                // warm-up also opens the pooled connection, so the handshake is not timed
+                SftpUtil.upload(pool, target, file, remoteDir, "warmup.bin");
+                long best = Long.MAX_VALUE;
+                long total = 0;
+                for (int i = 0; i < rounds; i++) {
+                    long t0 = System.nanoTime();
+                    SftpUtil.upload(pool, target, file, remoteDir, "bench-" + i + ".bin");
+                    long elapsed = System.nanoTime() - t0;
+                    best = Math.min(best, elapsed);
+                    total += elapsed;
+                }
+                System.out.printf(Locale.ROOT, "%-22s avg %8.2f MB/s   best %8.2f MB/s%n", entry.getKey(),
+                        mbPerSecond(data.length, total / rounds), mbPerSecond(data.length, best));
+            }
+        }
+    }
+
+    private static double mbPerSecond(long bytes, long nanos) {
+        return bytes / (1024d * 1024d) / (nanos / 1e9);
+    }
+}
@@ -0,0 +1,78 @@
+package org.robo.core;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+
+/**
+ * Reads cells of one workbook as trimmed strings: formulas from their evaluated result,
+ * dates as yyyy-MM-dd, numbers and booleans as Excel shows them. One formatter and one
+ * formula evaluator serve every cell, and the evaluator keeps its results between cells,
+ * so a formula referenced by many others is computed once.
+ *
+ * <p>Not thread-safe, like the workbook itself. ExcelProcessor keeps one per workbook in
+ * {@link WorkbookCache} and only uses it inside the cache's callbacks.</p>
+ */
+public final class CellReader {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private final Workbook workbook;
+    private final DataFormatter formatter = new DataFormatter();
+    private FormulaEvaluator evaluator;
+
+    public CellReader(Workbook workbook) {
+        this.workbook = Objects.requireNonNull(workbook, "Workbook is required");
+    }
+
+    // robust cell reader: handles formula, dates, numbers, boolean
+    public String read(Cell cell) {
+        if (cell == null) return "";
+        try {
+            if (cell.getCellType() == CellType.FORMULA) {
+                FormulaEvaluator ev = evaluator();
+                CellValue cv = ev.evaluate(cell);
+                if (cv == null) return "";
+                switch (cv.getCellType()) {
+                    case STRING: return cv.getStringValue().trim();
+                    case BOOLEAN: return String.valueOf(cv.getBooleanValue());
+                    case NUMERIC:
+                        if (DateUtil.isCellDateFormatted(cell)) {
+                            return formatDate(DateUtil.getLocalDateTime(cv.getNumberValue()));
+                        } else {
+                            return formatter.formatCellValue(cell, ev).trim();
+                        }
+                    default: return "";
+                }
+            } else if (cell.getCellType() == CellType.NUMERIC) {
+                if (DateUtil.isCellDateFormatted(cell)) {
+                    return formatDate(cell.getLocalDateTimeCellValue());
+                } else {
+                    return formatter.formatCellValue(cell).trim();
+                }
+            } else {
+                return formatter.formatCellValue(cell).trim();
+            }
+        } catch (Exception e) {
+            return formatter.formatCellValue(cell).trim();
+        }
+    }
+
+    static String formatDate(LocalDateTime dateTime) {
+        return DATE_FORMATTER.format(dateTime);
+    }
+
+    // created on the first formula cell; many sheets have none
+    private FormulaEvaluator evaluator() {
+        if (evaluator == null) evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+        return evaluator;
+    }
+}
@@ -0,0 +1,332 @@
+package org.robo.core;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Chunked AES format for very large files. The input is split into fixed-size chunks,
+ * each encrypted on its own with AES-GCM or AES-CTR, so encryption and decryption use
+ * every core instead of one as with CBC. Input is read through memory maps and chunks
+ * are written at their final offsets, so memory use is about one chunk per worker.
+ *
+ * <p>Layout (big-endian):</p>
+ * <pre>
+ * header  magic "RCHK" | version u8 | mode u8 | reserved u16 | chunk size u32
+ *         | plaintext length u64 | chunk count u32 | nonce prefix (8 bytes)
+ * table   per chunk: ciphertext offset u64 | ciphertext length u32
+ * chunks  ciphertext (GCM: followed by its 16-byte tag)
+ * </pre>
+ *
+ * <p>Chunk {@code i} uses the nonce {@code prefix || i}. In GCM mode the header is
+ * authenticated with every chunk, so reordered, swapped or truncated chunks fail to
+ * decrypt. CTR mode has no integrity protection and should only be used where
+ * integrity is checked some other way.</p>
+ */
+public final class ChunkedFileCipher {
+
+    public enum Mode { GCM, CTR }
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private static final byte[] MAGIC = {'R', 'C', 'H', 'K'};
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int TABLE_ENTRY_SIZE = 12;
+    private static final int GCM_TAG_BYTES = 16;
+    private static final int MIN_CHUNK_SIZE = 4 * 1024;
+    private static final int CIPHER_SLICE = 64 * 1024;
+    // keeps the chunk table addressable by a single int-sized buffer
+    private static final int MAX_CHUNKS = (Integer.MAX_VALUE - HEADER_SIZE) / TABLE_ENTRY_SIZE;
+
+    private ChunkedFileCipher() {
+    }
+
+    public static void encrypt(byte[] keyBytes, Mode mode, File inputFile, File outFile) throws Exception {
+        encrypt(keyBytes, mode, DEFAULT_CHUNK_SIZE, inputFile, outFile, ForkJoinPool.commonPool());
+    }
+
+    public static void encrypt(byte[] keyBytes, Mode mode, int chunkSize, File inputFile, File outFile,
+                               ForkJoinPool pool) throws Exception {
+        SecretKeySpec key = aesKey(keyBytes);
+        if (mode == null) throw new IllegalArgumentException("Mode is required");
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > Integer.MAX_VALUE - GCM_TAG_BYTES)
+            throw new IllegalArgumentException("Chunk size must be at least " + MIN_CHUNK_SIZE + " bytes");
+
+        byte[] noncePrefix = new byte[8];
+        new SecureRandom().nextBytes(noncePrefix);
+
+        try (FileChannel in = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+            boolean ok = false;
+            try (FileChannel out = FileChannel.open(outFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long plainLength = in.size();
+                // an empty file still gets one (empty) chunk so GCM authenticates the header
+                long count = Math.max(1, (plainLength + chunkSize - 1) / chunkSize);
+                if (count > MAX_CHUNKS) throw new IllegalArgumentException("Too many chunks; use a larger chunk size");
+                Header header = new Header(mode, chunkSize, plainLength, (int) count, noncePrefix);
+
+                ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE + header.chunkCount * TABLE_ENTRY_SIZE);
+                head.put(header.encode());
+                for (int i = 0; i < header.chunkCount; i++) {
+                    head.putLong(header.cipherOffset(i));
+                    head.putInt(header.cipherLength(i));
+                }
+                head.flip();
+                writeFully(out, head, 0);
+
+                runChunks(pool, header.chunkCount, i -> {
+                    long plainOffset = (long) i * chunkSize;
+                    int plainLen = header.plainLength(i);
+                    MappedByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, plainOffset, plainLen);
+                    ByteBuffer dst = ByteBuffer.allocate(header.cipherLength(i));
+                    try (CipherPool.Lease lease = header.newCipher(Cipher.ENCRYPT_MODE, key, i)) {
+                        transform(lease.cipher(), src, dst);
+                    }
+                    dst.flip();
+                    writeFully(out, dst, header.cipherOffset(i));
+                });
+                ok = true;
+            } finally {
+                // a partial file has a valid header and chunk table, so it must not look finished
+                if (!ok) outFile.delete();
+            }
+        }
+    }
+
+    public static void decrypt(byte[] keyBytes, File encryptedFile, File outFile) throws Exception {
+        decrypt(keyBytes, encryptedFile, outFile, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decrypts a file written by {@link #encrypt}. In GCM mode any tampering fails with an
+     * {@link javax.crypto.AEADBadTagException}; the partial output file is then deleted.
+     */
+    public static void decrypt(byte[] keyBytes, File encryptedFile, File outFile, ForkJoinPool pool) throws Exception {
+        SecretKeySpec key = aesKey(keyBytes);
+        boolean ok = false;
+        try (FileChannel in = FileChannel.open(encryptedFile.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(outFile.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Header header = readHeader(in);
+
+            runChunks(pool, header.chunkCount, i -> {
+                ByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, header.cipherOffset(i), header.cipherLength(i));
+                ByteBuffer dst = ByteBuffer.allocate(header.plainLength(i));
+                try (CipherPool.Lease lease = header.newCipher(Cipher.DECRYPT_MODE, key, i)) {
+                    transform(lease.cipher(), src, dst);
+                }
+                dst.flip();
+                writeFully(out, dst, (long) i * header.chunkSize);
+            });
+            ok = true;
+        } finally {
+            if (!ok) outFile.delete();
+        }
+    }
+
+    // True when the file starts with the chunked format's magic bytes
+    public static boolean isChunkedFile(File file) throws IOException {
+        if (file.length() < HEADER_SIZE) return false;
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            readFully(in, magic, 0);
+            return ByteBuffer.wrap(MAGIC).equals(magic.flip());
+        }
+    }
+
+    // Reads and validates the header and chunk table against the file size
+    private static Header readHeader(FileChannel in) throws IOException {
+        ByteBuffer fixed = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(in, fixed, 0);
+        fixed.flip();
+        byte[] magic = new byte[MAGIC.length];
+        fixed.get(magic);
+        if (!ByteBuffer.wrap(MAGIC).equals(ByteBuffer.wrap(magic)))
+            throw new IllegalArgumentException("Not a chunked encrypted file");
+        int version = fixed.get() & 0xff;
+        if (version != VERSION) throw new IllegalArgumentException("Unsupported chunked format version " + version);
+        int modeId = fixed.get() & 0xff;
+        if (modeId >= Mode.values().length) throw new IllegalArgumentException("Unknown chunk cipher mode " + modeId);
+        fixed.getShort();
+        int chunkSize = fixed.getInt();
+        long plainLength = fixed.getLong();
+        int chunkCount = fixed.getInt();
+        byte[] noncePrefix = new byte[8];
+        fixed.get(noncePrefix);
+        if (chunkSize < MIN_CHUNK_SIZE || plainLength < 0 || chunkCount > MAX_CHUNKS
+                || chunkCount != Math.max(1, (plainLength + chunkSize - 1) / chunkSize))
+            throw new IllegalArgumentException("Corrupt chunked file header");
+        Header header = new Header(Mode.values()[modeId], chunkSize, plainLength, chunkCount, noncePrefix);
+
+        ByteBuffer table = ByteBuffer.allocate(chunkCount * TABLE_ENTRY_SIZE);
+        readFully(in, table, HEADER_SIZE);
+        table.flip();
+        long fileSize = in.size();
+        for (int i = 0; i < chunkCount; i++) {
+            long offset = table.getLong();
+            int length = table.getInt();
+            // the table is not authenticated, so only accept the layout encrypt() writes
+            if (offset != header.cipherOffset(i) || length != header.cipherLength(i) || offset + length > fileSize)
+                throw new IllegalArgumentException("Corrupt or truncated chunk table at chunk " + i);
+        }
+        return header;
+    }
+
+    private static SecretKeySpec aesKey(byte[] keyBytes) {
+        if (keyBytes == null) throw new IllegalArgumentException("Key cannot be null");
+        if (!(keyBytes.length == 16 || keyBytes.length == 24 || keyBytes.length == 32))
+            throw new IllegalArgumentException("AES key must be 16/24/32 bytes");
+        return new SecretKeySpec(keyBytes, "AES");
+    }
+
+    private static void runChunks(ForkJoinPool pool, int count, ChunkWork work) throws Exception {
+        try {
+            pool.invoke(new ChunkTask(work, 0, count));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (ChunkFailure e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Runs the whole chunk through the cipher in slices. A single multi-megabyte doFinal
+     * stays in one long-running call that the JIT does not compile to the AES/GHASH
+     * intrinsics, which made GCM several times slower than feeding it slice by slice.
+     */
+    private static void transform(Cipher cipher, ByteBuffer src, ByteBuffer dst) throws GeneralSecurityException {
+        int end = src.limit();
+        while (end - src.position() > CIPHER_SLICE) {
+            src.limit(src.position() + CIPHER_SLICE);
+            cipher.update(src, dst);
+            src.limit(end);
+        }
+        cipher.doFinal(src, dst);
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) position += out.write(buf, position);
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = in.read(buf, position);
+            if (n < 0) throw new EOFException("Unexpected end of chunked file");
+            position += n;
+        }
+    }
+
+    private interface ChunkWork {
+        void run(int chunk) throws IOException, GeneralSecurityException;
+    }
+
+    // Carries a checked crypto exception out of the fork-join pool
+    private static final class ChunkFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private ChunkFailure(GeneralSecurityException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized GeneralSecurityException getCause() {
+            return (GeneralSecurityException) super.getCause();
+        }
+    }
+
+    // Splits the chunk range in halves until single chunks remain
+    private static final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkWork work;
+        private final int from;
+        private final int to;
+
+        private ChunkTask(ChunkWork work, int from, int to) {
+            this.work = work;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                try {
+                    work.run(from);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (GeneralSecurityException e) {
+                    throw new ChunkFailure(e);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkTask(work, from, mid), new ChunkTask(work, mid, to));
+        }
+    }
+
+    private static final class Header {
+        private final Mode mode;
+        private final int chunkSize;
+        private final long plainLength;
+        private final int chunkCount;
+        private final byte[] noncePrefix;
+        private final byte[] encoded;
+
+        private Header(Mode mode, int chunkSize, long plainLength, int chunkCount, byte[] noncePrefix) {
+            this.mode = mode;
+            this.chunkSize = chunkSize;
+            this.plainLength = plainLength;
+            this.chunkCount = chunkCount;
+            this.noncePrefix = noncePrefix;
+            ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE);
+            buf.put(MAGIC).put((byte) VERSION).put((byte) mode.ordinal()).putShort((short) 0)
+                    .putInt(chunkSize).putLong(plainLength).putInt(chunkCount).put(noncePrefix);
+            this.encoded = buf.array();
+        }
+
+        private byte[] encode() {
+            return encoded;
+        }
+
+        private int plainLength(int chunk) {
+            return (int) Math.min(chunkSize, plainLength - (long) chunk * chunkSize);
+        }
+
+        private int cipherLength(int chunk) {
+            return plainLength(chunk) + (mode == Mode.GCM ? GCM_TAG_BYTES : 0);
+        }
+
+        private long cipherOffset(int chunk) {
+            long dataStart = HEADER_SIZE + (long) chunkCount * TABLE_ENTRY_SIZE;
+            return dataStart + (long) chunk * (chunkSize + (mode == Mode.GCM ? GCM_TAG_BYTES : 0));
+        }
+
+        private CipherPool.Lease newCipher(int opmode, SecretKeySpec key, int chunk) throws GeneralSecurityException {
+            if (mode == Mode.GCM) {
+                byte[] nonce = ByteBuffer.allocate(12).put(noncePrefix).putInt(chunk).array();
+                CipherPool.Lease lease = CipherPool.shared().borrow("AES/GCM/NoPadding", opmode, key,
+                        new GCMParameterSpec(GCM_TAG_BYTES * 8, nonce));
+                lease.cipher().updateAAD(encoded);
+                return lease;
+            }
+            // 64-bit prefix, 32-bit chunk index, 32-bit block counter starting at zero
+            byte[] iv = ByteBuffer.allocate(16).put(noncePrefix).putInt(chunk).putInt(0).array();
+            return CipherPool.shared().borrow("AES/CTR/NoPadding", opmode, key, new IvParameterSpec(iv));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.robo.core;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe pool of {@link Cipher} engines keyed by transformation and key size, so
+ * batch encryption skips the provider lookup in {@code Cipher.getInstance} for every file
+ * or chunk. A borrowed engine is always re-initialised with the caller's key and
+ * parameters, so no state carries over between leases.
+ *
+ * <p>An idle engine still holds the key schedule (and, in SunJCE, a copy of the raw key)
+ * of its last lease. That is what makes reuse cheap: re-initialising with the same key
+ * skips key expansion, while switching keys costs about as much as a new engine. Leases
+ * for keys that must not outlive their use, such as password-derived keys, call
+ * {@link Lease#scrubOnClose()}; the engine is then re-keyed with zeros before it is pooled.</p>
+ */
+public final class CipherPool {
+
+    public static final int DEFAULT_MAX_IDLE_PER_KEY = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    private static final CipherPool SHARED = new CipherPool(DEFAULT_MAX_IDLE_PER_KEY);
+
+    private final int maxIdlePerKey;
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+    public CipherPool(int maxIdlePerKey) {
+        if (maxIdlePerKey < 0) throw new IllegalArgumentException("Idle limit cannot be negative");
+        this.maxIdlePerKey = maxIdlePerKey;
+    }
+
+    public static CipherPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Borrows an engine initialised for opmode with the key and (optional) parameters.
+     * Close the lease to return the engine; a lease that is never closed is simply dropped.
+     */
+    public Lease borrow(String transformation, int opmode, Key key, AlgorithmParameterSpec params)
+            throws GeneralSecurityException {
+        Objects.requireNonNull(transformation, "Transformation is required");
+        Objects.requireNonNull(key, "Key is required");
+        byte[] encoded = key.getEncoded();
+        int keyBits = encoded == null ? 0 : encoded.length * 8;
+        if (encoded != null) Arrays.fill(encoded, (byte) 0);
+        Slot slot = slots.computeIfAbsent(transformation + ":" + keyBits, k -> new Slot(transformation, keyBits));
+        Cipher cipher = slot.idle.pollFirst();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(transformation);
+        } else {
+            slot.size.decrementAndGet();
+        }
+        if (params == null) {
+            cipher.init(opmode, key);
+        } else {
+            cipher.init(opmode, key, params);
+        }
+        return new Lease(slot, cipher);
+    }
+
+    // Engines currently idle across all keys
+    public int getIdleCount() {
+        int n = 0;
+        for (Slot slot : slots.values()) n += slot.size.get();
+        return n;
+    }
+
+    public void clear() {
+        slots.clear();
+    }
+
+    private void giveBack(Slot slot, Cipher cipher, boolean scrub) {
+        if (scrub && !scrub(slot, cipher)) return;
+        if (slot.size.incrementAndGet() > maxIdlePerKey) {
+            slot.size.decrementAndGet();
+            return;
+        }
+        slot.idle.offerFirst(cipher);
+    }
+
+    /**
+     * Replaces the caller's key in the engine with a zero key of the same size; false if the
+     * engine cannot be re-keyed and must be dropped. Decrypt mode, since GCM refuses to
+     * encrypt twice with one key and IV.
+     */
+    private static boolean scrub(Slot slot, Cipher cipher) {
+        if (slot.scrubKey == null) return false;
+        try {
+            if (slot.scrubParams == null) {
+                cipher.init(Cipher.DECRYPT_MODE, slot.scrubKey);
+            } else {
+                cipher.init(Cipher.DECRYPT_MODE, slot.scrubKey, slot.scrubParams);
+            }
+            return true;
+        } catch (GeneralSecurityException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    public final class Lease implements AutoCloseable {
+        private final Slot slot;
+        private Cipher cipher;
+        private boolean scrub;
+
+        private Lease(Slot slot, Cipher cipher) {
+            this.slot = slot;
+            this.cipher = cipher;
+        }
+
+        public Cipher cipher() {
+            if (cipher == null) throw new IllegalStateException("Lease is closed");
+            return cipher;
+        }
+
+        // Removes the key from the engine when the lease is closed, at the cost of a key expansion
+        public Lease scrubOnClose() {
+            scrub = true;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            if (cipher == null) return;
+            giveBack(slot, cipher, scrub);
+            cipher = null;
+        }
+    }
+
+    private static final class Slot {
+        // most recently returned first, so the hottest engines are reused
+        private final ConcurrentLinkedDeque<Cipher> idle = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger size = new AtomicInteger();
+        // null when the key size is unknown, e.g. a hardware key; such engines cannot be scrubbed
+        private final SecretKeySpec scrubKey;
+        private final AlgorithmParameterSpec scrubParams;
+
+        private Slot(String transformation, int keyBits) {
+            String[] parts = transformation.split("/");
+            this.scrubKey = keyBits == 0 ? null : new SecretKeySpec(new byte[keyBits / 8], parts[0]);
+            String mode = parts.length > 1 ? parts[1].toUpperCase(Locale.ROOT) : "ECB";
+            if (mode.equals("ECB")) {
+                this.scrubParams = null;
+            } else if (mode.equals("GCM")) {
+                this.scrubParams = new GCMParameterSpec(128, new byte[12]);
+            } else {
+                this.scrubParams = new IvParameterSpec(new byte[16]);
+            }
+        }
+    }
+}
@@ -1,32 +1,73 @@
 package org.robo.core;
 
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.*;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
-import java.security.spec.KeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class CryptoUtil {
 
-    // AES CBC encryption, writes IV (16 bytes) first and then ciphertext
-    // AES CBC encryption using user-provided keyBytes and ivBytes
-    /**
-     * AES encryption using CBC or ECB mode.
-     * If ivBytes is provided, uses CBC; otherwise, ECB.
-     *
-     * @param keyBytes   Secret key as UTF-8 bytes (16, 24, 32 bytes for 128/192/256-bit AES)
-     * @param ivBytes    Initialization Vector as UTF-8 bytes (16 bytes for CBC). Null for ECB.
-     * @param inputFile  Plaintext file to encrypt
-     * @param outFile    Output file for encrypted data
-     * @throws Exception
-     */
+    public static final int PBKDF2_ITERATIONS = 100_000;
+    // salt and info sizes PasswordEncryptionSession writes into the RPK1 header
+    private static final int RPK1_SALT_LENGTH = 16;
+    private static final int RPK1_INFO_LENGTH = PasswordEncryptionSession.INFO_LABEL.length() + 16;
+
+    // plaintext bytes per AES-GCM record; large enough to amortise the per-record tag and init
+    public static final int GCM_FRAME_SIZE = 64 * 1024;
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] GCM_MAGIC = {'R', 'G', 'C', 'M'};
+    private static final int GCM_HEADER_LENGTH = 16;
+    private static final int GCM_TAG_LENGTH = 16;
+    private static final int GCM_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    private static final int GCM_FINAL_FRAME = 0x80000000;
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    // engines are not thread-safe, so each thread keeps its own instead of looking one up per call
+    private static final ThreadLocal<SecretKeyFactory> PBKDF2_FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private static final ThreadLocal<Mac> HMAC_SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance("HmacSHA256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) HEX_VALUES['0' + i] = (byte) i;
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
     /**
      * Encrypts a file using AES in CBC or ECB mode.
      * Writes Base64-encoded output to outFile.
+     * The file is streamed through a reused buffer, so memory use does not grow with its size.
      *
      * @param keyBytes AES key (16/24/32 bytes)
      * @param ivBytes  Initialization Vector (16 bytes for CBC), or null for ECB
@@ -35,42 +76,341 @@ public class CryptoUtil {
      * @throws Exception
      */
     public static void encryptFileAES_CBC(byte[] keyBytes, byte[] ivBytes, File inputFile, File outFile) throws Exception {
-        if (keyBytes == null) throw new IllegalArgumentException("Key cannot be null");
-        if (!(keyBytes.length == 16 || keyBytes.length == 24 || keyBytes.length == 32))
-            throw new IllegalArgumentException("AES key must be 16/24/32 bytes");
+        // Base64 stream without line breaks, same bytes as encodeToString on the whole ciphertext
+        try (CipherPool.Lease lease = aesCipher(Cipher.ENCRYPT_MODE, keyBytes, ivBytes);
+             FileInputStream fis = new FileInputStream(inputFile);
+             OutputStream out = Base64.getEncoder().wrap(
+                     new BufferedOutputStream(new FileOutputStream(outFile), STREAM_BUFFER_SIZE))) {
+            runCipher(lease.cipher(), fis, out);
+        }
+    }
 
-        SecretKeySpec keySpec = new SecretKeySpec(keyBytes, "AES");
-        Cipher cipher;
+    /**
+     * Encrypts a file with AES-GCM in independently authenticated records, so files of any
+     * size stream through a fixed buffer and integrity needs no separate MAC pass.
+     *
+     * <p>Layout: header "RGCM" | frame size u32 | nonce prefix (8 bytes), then records of
+     * length u32 (top bit set on the last record) | ciphertext | 16-byte tag. Record i uses
+     * nonce prefix || i and authenticates the header and its own length word, so reordered,
+     * dropped or truncated records fail decryption.</p>
+     *
+     * @param keyBytes AES key (16/24/32 bytes); the nonce is random per file
+     */
+    public static void encryptFileAES_GCM(byte[] keyBytes, File inputFile, File outFile) throws Exception {
+        try (FileInputStream fis = new FileInputStream(inputFile);
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(outFile), STREAM_BUFFER_SIZE)) {
+            encryptAES_GCM(keyBytes, GCM_FRAME_SIZE, fis, out);
+        }
+    }
 
-        boolean isCBC = ivBytes != null;
-        if (isCBC) {
-            if (ivBytes.length != 16) throw new IllegalArgumentException("IV must be exactly 16 bytes for CBC mode");
-            IvParameterSpec ivSpec = new IvParameterSpec(ivBytes);
-            cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-            cipher.init(Cipher.ENCRYPT_MODE, keySpec, ivSpec);
-        } else {
-            cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-            cipher.init(Cipher.ENCRYPT_MODE, keySpec);
+    public static void decryptFileAES_GCM(byte[] keyBytes, File encryptedFile, File outFile) throws Exception {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(encryptedFile), STREAM_BUFFER_SIZE);
+             OutputStream out = new FileOutputStream(outFile)) {
+            aesGcmDecryptor(keyBytes).decrypt(in, out);
         }
+    }
+
+    // Stream form of encryptFileAES_GCM; neither stream is closed
+    public static void encryptAES_GCM(byte[] keyBytes, int frameSize, InputStream in, OutputStream out) throws Exception {
+        if (frameSize < 1 || frameSize > GCM_MAX_FRAME_SIZE)
+            throw new IllegalArgumentException("Frame size must be between 1 and " + GCM_MAX_FRAME_SIZE);
+        SecretKeySpec keySpec = aesKey(keyBytes);
+        byte[] header = new byte[GCM_HEADER_LENGTH];
+        System.arraycopy(GCM_MAGIC, 0, header, 0, 4);
+        putInt(header, 4, frameSize);
+        byte[] prefix = new byte[8];
+        new SecureRandom().nextBytes(prefix);
+        System.arraycopy(prefix, 0, header, 8, 8);
+        out.write(header);
 
-        // Read entire file
-        byte[] inputBytes;
-        try (FileInputStream fis = new FileInputStream(inputFile)) {
-            inputBytes = fis.readAllBytes();
+        byte[] frame = new byte[frameSize];
+        byte[] next = new byte[frameSize];
+        byte[] sealed = new byte[4 + frameSize + GCM_TAG_LENGTH];
+        int n = in.readNBytes(frame, 0, frameSize);
+        try (CipherPool.Lease lease = CipherPool.shared().borrow("AES/GCM/NoPadding", Cipher.ENCRYPT_MODE, keySpec,
+                gcmSpec(prefix, 0))) {
+            Cipher cipher = lease.cipher();
+            for (long index = 0; ; index++) {
+                // read ahead one record so the last one can be flagged, even when the size is a multiple of frameSize
+                int m = n < frameSize ? 0 : in.readNBytes(next, 0, frameSize);
+                boolean last = m == 0;
+                putInt(sealed, 0, last ? n | GCM_FINAL_FRAME : n);
+                // record 0 uses the nonce the engine was borrowed with; GCM refuses a repeated init
+                if (index > 0) cipher.init(Cipher.ENCRYPT_MODE, keySpec, gcmSpec(prefix, index));
+                cipher.updateAAD(header);
+                cipher.updateAAD(sealed, 0, 4);
+                int len = cipher.doFinal(frame, 0, n, sealed, 4);
+                out.write(sealed, 0, 4 + len);
+                if (last) return;
+                byte[] t = frame;
+                frame = next;
+                next = t;
+                n = m;
+            }
         }
+    }
 
-        // Encrypt
-        byte[] encrypted = cipher.doFinal(inputBytes);
+    // Decryptor for encryptFileAES_GCM output; a tampered or truncated file throws AEADBadTagException
+    public static Decryptor aesGcmDecryptor(byte[] keyBytes) {
+        SecretKeySpec keySpec = aesKey(keyBytes);
+        return (in, out) -> {
+            DataInputStream data = new DataInputStream(in);
+            byte[] header = new byte[GCM_HEADER_LENGTH];
+            data.readFully(header);
+            if (!Arrays.equals(Arrays.copyOf(header, 4), GCM_MAGIC)) throw new AEADBadTagException("Not an AES-GCM framed file");
+            int frameSize = getInt(header, 4);
+            if (frameSize < 1 || frameSize > GCM_MAX_FRAME_SIZE) throw new AEADBadTagException("Invalid frame size " + frameSize);
+            byte[] prefix = Arrays.copyOfRange(header, 8, 16);
 
-        // Encode to Base64 exactly like FE
-        String base64Output = Base64.getEncoder().encodeToString(encrypted);
+            byte[] length = new byte[4];
+            byte[] sealed = new byte[frameSize + GCM_TAG_LENGTH];
+            byte[] plain = new byte[frameSize];
+            try (CipherPool.Lease lease = CipherPool.shared().borrow("AES/GCM/NoPadding", Cipher.DECRYPT_MODE, keySpec,
+                    gcmSpec(prefix, 0))) {
+                Cipher cipher = lease.cipher();
+                for (long index = 0; ; index++) {
+                    data.readFully(length);
+                    int word = getInt(length, 0);
+                    int n = word & ~GCM_FINAL_FRAME;
+                    if (n > frameSize) throw new AEADBadTagException("Record " + index + " is larger than the frame size");
+                    data.readFully(sealed, 0, n + GCM_TAG_LENGTH);
+                    if (index > 0) cipher.init(Cipher.DECRYPT_MODE, keySpec, gcmSpec(prefix, index));
+                    cipher.updateAAD(header);
+                    cipher.updateAAD(length);
+                    out.write(plain, 0, cipher.doFinal(sealed, 0, n + GCM_TAG_LENGTH, plain, 0));
+                    if ((word & GCM_FINAL_FRAME) != 0) break;
+                }
+            }
+            if (data.read() != -1) throw new AEADBadTagException("Data after the final record");
+        };
+    }
+
+    private static GCMParameterSpec gcmSpec(byte[] prefix, long index) {
+        if (index > 0xFFFFFFFFL) throw new IllegalStateException("Too many AES-GCM records for one nonce prefix");
+        byte[] nonce = Arrays.copyOf(prefix, 12);
+        putInt(nonce, 8, (int) index);
+        return new GCMParameterSpec(GCM_TAG_LENGTH * 8, nonce);
+    }
 
-        // Write Base64 string to output file
-        try (FileOutputStream fos = new FileOutputStream(outFile)) {
-            fos.write(base64Output.getBytes(StandardCharsets.UTF_8));
+    private static void putInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    private static int getInt(byte[] b, int off) {
+        return (b[off] & 0xFF) << 24 | (b[off + 1] & 0xFF) << 16 | (b[off + 2] & 0xFF) << 8 | (b[off + 3] & 0xFF);
+    }
+
+    // Reverses encryptFileAES_CBC: Base64 input, plaintext output
+    public static void decryptFileAES_CBC(byte[] keyBytes, byte[] ivBytes, File encryptedFile, File outFile) throws Exception {
+        try (InputStream in = new FileInputStream(encryptedFile);
+             OutputStream out = new FileOutputStream(outFile)) {
+            aesCbcDecryptor(keyBytes, ivBytes).decrypt(in, out);
         }
     }
 
+    // Reverses encryptFileWithPassword and PasswordEncryptionSession
+    public static void decryptFileWithPassword(String passphrase, File encryptedFile, File outFile) throws Exception {
+        try (InputStream in = new FileInputStream(encryptedFile);
+             OutputStream out = new FileOutputStream(outFile)) {
+            passwordDecryptor(passphrase).decrypt(in, out);
+        }
+    }
+
+    /** Streams ciphertext from in to plaintext on out; neither stream is closed. */
+    public interface Decryptor {
+        void decrypt(InputStream in, OutputStream out) throws Exception;
+    }
+
+    // Decryptor for encryptFileAES_CBC output (ECB when ivBytes is null)
+    public static Decryptor aesCbcDecryptor(byte[] keyBytes, byte[] ivBytes) {
+        return (in, out) -> {
+            try (CipherPool.Lease lease = aesCipher(Cipher.DECRYPT_MODE, keyBytes, ivBytes)) {
+                runCipher(lease.cipher(), Base64.getDecoder().wrap(in), out);
+            }
+        };
+    }
+
+    /**
+     * Decryptor for both password formats: the batch header written by
+     * {@link PasswordEncryptionSession} and the legacy salt(16) + IV(16) layout of
+     * encryptFileWithPassword. Master keys come from {@link PasswordKeyCache}, so a
+     * batch sharing one salt is stretched once.
+     */
+    public static Decryptor passwordDecryptor(String passphrase) {
+        return (in, out) -> {
+            DataInputStream data = new DataInputStream(in);
+            byte[] head = new byte[16];
+            data.readFully(head);
+            byte[] keyBytes;
+            byte[] iv = new byte[16];
+            // a legacy file whose random salt starts with the magic (1 in 2^32) would be misread
+            if (Arrays.equals(Arrays.copyOf(head, 4), PasswordEncryptionSession.MAGIC)) {
+                DataInputStream header = new DataInputStream(new SequenceInputStream(
+                        new ByteArrayInputStream(head, 4, head.length - 4), in));
+                // only these values are ever written; anything else is corrupt, and a huge
+                // iteration count would tie up PBKDF2 for hours before failing
+                int iterations = header.readInt();
+                if (iterations != PBKDF2_ITERATIONS) throw badPasswordHeader("PBKDF2 iterations", Integer.toUnsignedString(iterations));
+                int saltLength = header.readUnsignedByte();
+                if (saltLength != RPK1_SALT_LENGTH) throw badPasswordHeader("salt length", Integer.toString(saltLength));
+                byte[] salt = new byte[saltLength];
+                header.readFully(salt);
+                int infoLength = header.readUnsignedShort();
+                if (infoLength != RPK1_INFO_LENGTH) throw badPasswordHeader("info length", Integer.toString(infoLength));
+                byte[] info = new byte[infoLength];
+                header.readFully(info);
+                header.readFully(iv);
+                try (PasswordKeyCache.MasterKey master = PasswordKeyCache.shared().forSalt(passphrase, salt, iterations)) {
+                    keyBytes = hkdfSha256(master.key(), salt, info, 32);
+                }
+                data = header;
+            } else {
+                try (PasswordKeyCache.MasterKey master = PasswordKeyCache.shared().forSalt(passphrase, head, PBKDF2_ITERATIONS)) {
+                    keyBytes = master.key().clone();
+                }
+                data.readFully(iv);
+            }
+            CipherPool.Lease lease;
+            try {
+                // password-derived, so the pooled engine must not keep it
+                lease = aesCipher(Cipher.DECRYPT_MODE, keyBytes, iv).scrubOnClose();
+            } finally {
+                Arrays.fill(keyBytes, (byte) 0);
+            }
+            try (lease) {
+                runCipher(lease.cipher(), data, out);
+            }
+        };
+    }
+
+    private static IOException badPasswordHeader(String field, String value) {
+        return new IOException("Corrupt RPK1 header: " + field + " " + value + " is not supported");
+    }
+
+    /**
+     * Decrypts on the fly and compares the SHA-256 of the result with the source file,
+     * without writing plaintext anywhere. A wrong key or corrupt ciphertext is a mismatch.
+     */
+    public static boolean verifyRoundTrip(File sourceFile, File encryptedFile, Decryptor decryptor) throws Exception {
+        MessageDigest expected = MessageDigest.getInstance("SHA-256");
+        try (InputStream in = new DigestInputStream(new FileInputStream(sourceFile), expected)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        MessageDigest actual = MessageDigest.getInstance("SHA-256");
+        try (InputStream in = new BufferedInputStream(new FileInputStream(encryptedFile), STREAM_BUFFER_SIZE)) {
+            decryptor.decrypt(in, new DigestOutputStream(OutputStream.nullOutputStream(), actual));
+        } catch (GeneralSecurityException | EOFException e) {
+            // bad padding or a truncated header
+            return false;
+        }
+        return MessageDigest.isEqual(expected.digest(), actual.digest());
+    }
+
+    /**
+     * Verifies every {@code <name><encryptedSuffix>} in the folder against its source
+     * {@code <name>} next to it, on a fixed number of threads. Results are in file-name order.
+     */
+    public static List<RoundTripResult> verifyFolder(File folder, String encryptedSuffix, Decryptor decryptor,
+                                                     int threads) throws IOException {
+        if (threads < 1) throw new IllegalArgumentException("Thread count must be at least 1");
+        File[] encrypted = folder.listFiles(f -> f.isFile() && f.getName().endsWith(encryptedSuffix)
+                && f.getName().length() > encryptedSuffix.length());
+        if (encrypted == null) throw new IOException("Not a directory: " + folder);
+        Arrays.sort(encrypted, Comparator.comparing(File::getName));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "roundtrip-verify");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<CompletableFuture<RoundTripResult>> futures = new ArrayList<>(encrypted.length);
+            for (File enc : encrypted) {
+                String name = enc.getName();
+                File source = new File(folder, name.substring(0, name.length() - encryptedSuffix.length()));
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    if (!source.isFile()) return new RoundTripResult(source, enc, false, new FileNotFoundException(source.getPath()));
+                    try {
+                        return new RoundTripResult(source, enc, verifyRoundTrip(source, enc, decryptor), null);
+                    } catch (Exception e) {
+                        return new RoundTripResult(source, enc, false, e);
+                    }
+                }, executor));
+            }
+            List<RoundTripResult> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<RoundTripResult> f : futures) results.add(f.join());
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static final class RoundTripResult {
+        private final File sourceFile;
+        private final File encryptedFile;
+        private final boolean match;
+        private final Exception error;
+
+        public RoundTripResult(File sourceFile, File encryptedFile, boolean match, Exception error) {
+            this.sourceFile = sourceFile;
+            this.encryptedFile = encryptedFile;
+            this.match = match;
+            this.error = error;
+        }
+
+        public File getSourceFile() {
+            return sourceFile;
+        }
+
+        public File getEncryptedFile() {
+            return encryptedFile;
+        }
+
+        // True when the decrypted content matches the source
+        public boolean isMatch() {
+            return match;
+        }
+
+        // Set when the check could not run, e.g. a missing source file
+        public Exception getError() {
+            return error;
+        }
+    }
+
+    // Pushes everything from in through the cipher into out using two reused buffers
+    private static void runCipher(Cipher cipher, InputStream in, OutputStream out) throws Exception {
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        // room for a full buffer plus the block held back by the cipher and the final padding
+        byte[] output = new byte[cipher.getOutputSize(STREAM_BUFFER_SIZE)];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(output, 0, cipher.update(buffer, 0, n, output));
+        }
+        out.write(output, 0, cipher.doFinal(output, 0));
+    }
+
+    // AES/CBC/PKCS5Padding when ivBytes is given, otherwise AES/ECB/PKCS5Padding
+    static CipherPool.Lease aesCipher(int opmode, byte[] keyBytes, byte[] ivBytes) throws Exception {
+        SecretKeySpec keySpec = aesKey(keyBytes);
+
+        boolean isCBC = ivBytes != null;
+        if (isCBC) {
+            if (ivBytes.length != 16) throw new IllegalArgumentException("IV must be exactly 16 bytes for CBC mode");
+            return CipherPool.shared().borrow("AES/CBC/PKCS5Padding", opmode, keySpec, new IvParameterSpec(ivBytes));
+        }
+        return CipherPool.shared().borrow("AES/ECB/PKCS5Padding", opmode, keySpec, null);
+    }
+
+
+    private static SecretKeySpec aesKey(byte[] keyBytes) {
+        if (keyBytes == null) throw new IllegalArgumentException("Key cannot be null");
+        if (!(keyBytes.length == 16 || keyBytes.length == 24 || keyBytes.length == 32))
+            throw new IllegalArgumentException("AES key must be 16/24/32 bytes");
+        return new SecretKeySpec(keyBytes, "AES");
+    }
 
     // Derive key from passphrase using PBKDF2 and encrypt using AES-CBC
     public static void encryptFileWithPassword(String passphrase, File inputFile, File outFile) throws Exception {
@@ -80,9 +420,7 @@ public class CryptoUtil {
         sr.nextBytes(salt);
 
         // PBKDF2 with HmacSHA256
-        SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-        KeySpec spec = new PBEKeySpec(passphrase.toCharArray(), salt, 100_000, 256);
-        byte[] keyBytes = skf.generateSecret(spec).getEncoded();
+        byte[] keyBytes = pbkdf2(passphrase, salt, PBKDF2_ITERATIONS);
 
         // write salt (16 bytes) then IV (16 bytes) then ciphertext
         byte[] iv = new byte[16];
@@ -90,12 +428,13 @@ public class CryptoUtil {
 
         SecretKeySpec keySpec = new SecretKeySpec(keyBytes, "AES");
         IvParameterSpec ivSpec = new IvParameterSpec(iv);
+        Arrays.fill(keyBytes, (byte) 0);
 
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-        cipher.init(Cipher.ENCRYPT_MODE, keySpec, ivSpec);
-
-        try (FileInputStream fis = new FileInputStream(inputFile);
+        try (CipherPool.Lease lease = CipherPool.shared().borrow("AES/CBC/PKCS5Padding", Cipher.ENCRYPT_MODE, keySpec, ivSpec)
+                .scrubOnClose();
+             FileInputStream fis = new FileInputStream(inputFile);
              FileOutputStream fos = new FileOutputStream(outFile)) {
+            Cipher cipher = lease.cipher();
 
             // write salt then IV
             fos.write(salt);
@@ -114,16 +453,79 @@ public class CryptoUtil {
     }
 
 
-    // Helper - hex string to bytes
+    /**
+     * Encrypts many files with one passphrase, stretching it only once. Each output is
+     * written as {@code <name>.enc} in outDir using {@link PasswordEncryptionSession}'s format.
+     */
+    public static List<File> encryptFilesWithPassword(String passphrase, List<File> inputFiles, File outDir) throws Exception {
+        List<File> outputs = new ArrayList<>(inputFiles.size());
+        try (PasswordEncryptionSession session = PasswordEncryptionSession.open(passphrase)) {
+            for (File in : inputFiles) {
+                File out = new File(outDir, in.getName() + ".enc");
+                session.encryptFile(in, out);
+                outputs.add(out);
+            }
+        }
+        return outputs;
+    }
+
+    // PBKDF2-HmacSHA256 to a 256-bit key; the caller should zero the result when done
+    static byte[] pbkdf2(String passphrase, byte[] salt, int iterations) throws Exception {
+        char[] chars = passphrase.toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(chars, salt, iterations, 256);
+        try {
+            return PBKDF2_FACTORY.get().generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(chars, '\0');
+        }
+    }
+
+    // HKDF-SHA256 (RFC 5869) extract-then-expand
+    static byte[] hkdfSha256(byte[] inputKey, byte[] salt, byte[] info, int length) throws Exception {
+        if (length < 1 || length > 255 * 32) throw new IllegalArgumentException("Invalid HKDF output length " + length);
+        Mac mac = HMAC_SHA256.get();
+        mac.init(new SecretKeySpec(salt == null || salt.length == 0 ? new byte[32] : salt, "HmacSHA256"));
+        byte[] prk = mac.doFinal(inputKey);
+        try {
+            mac.init(new SecretKeySpec(prk, "HmacSHA256"));
+            byte[] okm = new byte[length];
+            byte[] block = new byte[0];
+            for (int i = 1, pos = 0; pos < length; i++) {
+                mac.update(block);
+                mac.update(info);
+                mac.update((byte) i);
+                block = mac.doFinal();
+                int n = Math.min(block.length, length - pos);
+                System.arraycopy(block, 0, okm, pos, n);
+                pos += n;
+            }
+            Arrays.fill(block, (byte) 0);
+            return okm;
+        } finally {
+            Arrays.fill(prk, (byte) 0);
+        }
+    }
+
+
+    // Helper - hex string to bytes; anything that is not a hex digit (spaces, colons) is skipped
     public static byte[] hexStringToBytes(String hex) {
-        hex = hex.replaceAll("[^0-9A-Fa-f]", "");
         int len = hex.length();
-        if (len % 2 != 0) throw new IllegalArgumentException("Hex string length must be even");
         byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(hex.charAt(i), 16) << 4)
-                    + Character.digit(hex.charAt(i + 1), 16));
+        int digits = 0;
+        int high = 0;
+        for (int i = 0; i < len; i++) {
+            char c = hex.charAt(i);
+            int d = c < 128 ? HEX_VALUES[c] : -1;
+            if (d < 0) continue;
+            if ((digits & 1) == 0) {
+                high = d << 4;
+            } else {
+                data[digits >> 1] = (byte) (high | d);
+            }
+            digits++;
         }
-        return data;
+        if (digits % 2 != 0) throw new IllegalArgumentException("Hex string length must be even");
+        return digits == len ? data : Arrays.copyOf(data, digits / 2);
     }
 }
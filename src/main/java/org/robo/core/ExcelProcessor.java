@@ -3,48 +3,33 @@ package org.robo.core;
 
 
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 public class ExcelProcessor {
 
-    private static final String DATE_FORMAT = "yyyy-MM-dd";
+    private static final String EXTERNAL_ID_HEADER = "ExternalId";
+    // rows read from the sheet, then generated in parallel, per step of processAll
+    private static final int BATCH_BLOCK_ROWS = 1024;
 
-    // List sheet names
+    // List sheet names; streamed from workbook.xml, no workbook is built
     public static List<String> listSheetNames(File excel) throws IOException {
-        try (FileInputStream fis = new FileInputStream(excel);
-             Workbook wb = new XSSFWorkbook(fis)) {
-            List<String> names = new ArrayList<>();
-            for (int i = 0; i < wb.getNumberOfSheets(); i++) names.add(wb.getSheetName(i));
-            return names;
-        }
+        return XlsxStreamReader.sheetNames(excel);
     }
 
-    // List scenarios: read first column values excluding header row (row 0)
+    // List scenarios: first column values excluding header row (row 0), streamed with SAX
     public static List<String> listScenarios(File excel, String sheetName) throws IOException {
-        try (FileInputStream fis = new FileInputStream(excel);
-             Workbook wb = new XSSFWorkbook(fis)) {
-            Sheet s = wb.getSheet(sheetName);
-            if (s == null) return Collections.emptyList();
-            List<String> scen = new ArrayList<>();
-            int firstRow = s.getFirstRowNum();
-            for (int r = firstRow + 1; r <= s.getLastRowNum(); r++) {
-                Row row = s.getRow(r);
-                if (row == null) continue;
-                String first = getCellValue(row.getCell(0));
-                if (first == null || first.isBlank()) continue;
-                scen.add(first);
-            }
-            return scen;
-        }
+        return XlsxStreamReader.firstColumn(excel, sheetName);
     }
 
     // Load encode fields from a text file (one field per line)
@@ -60,159 +45,291 @@ public class ExcelProcessor {
         return fields;
     }
 
+    /**
+     * Template for a sheet, compiled once per version of the file: headers, mandatory flags
+     * and an index from scenario name to row. Later calls for the same file are lookups.
+     */
     public static ExcelTemplate loadTemplate(File excelFile, String sheetName) throws IOException {
         Objects.requireNonNull(excelFile, "Excel file is required");
         Objects.requireNonNull(sheetName, "Sheet name is required");
-        try (FileInputStream fis = new FileInputStream(excelFile);
-             Workbook wb = new XSSFWorkbook(fis)) {
+        return WorkbookCache.shared().model(excelFile, templateKey(sheetName), wb -> compileTemplate(wb, sheetName));
+    }
 
-            Sheet sheet = wb.getSheet(sheetName);
-            if (sheet == null) throw new IllegalArgumentException("Sheet not found: " + sheetName);
+    private static String templateKey(String sheetName) {
+        return "template:" + sheetName;
+    }
 
-            Row headerRow = sheet.getRow(0);
-            if (headerRow == null) throw new IllegalStateException("Missing header row");
+    private static final String CELL_READER_KEY = "cells";
 
-            int lastCol = Math.max(1, headerRow.getLastCellNum());
-            List<String> headers = new ArrayList<>(lastCol);
-            for (int c = 0; c < lastCol; c++) {
-                headers.add(getCellValue(headerRow.getCell(c)));
-            }
+    /**
+     * The reader for a workbook from {@link WorkbookCache#shared()}, kept with it so every
+     * template and scan of one file version shares a formatter and evaluator cache. Only
+     * for use inside the cache callback that handed out the workbook.
+     */
+    static CellReader cellReader(Workbook wb) throws IOException {
+        return WorkbookCache.shared().model(wb, CELL_READER_KEY, CellReader::new);
+    }
 
-            List<ColumnInfo> columns = new ArrayList<>();
-            for (int c = 1; c < lastCol; c++) {
-                String rawHeader = headers.get(c);
-                if (rawHeader == null) rawHeader = "";
-                boolean mandatory = rawHeader.startsWith("M##");
-                String cleanName = mandatory ? rawHeader.substring(3) : rawHeader;
-                cleanName = cleanName == null ? "" : cleanName.trim();
-                columns.add(new ColumnInfo(c, rawHeader, cleanName, mandatory));
-            }
+    private static ExcelTemplate compileTemplate(Workbook wb, String sheetName) throws IOException {
+        CellReader cells = cellReader(wb);
+        Sheet sheet = wb.getSheet(sheetName);
+        if (sheet == null) throw new IllegalArgumentException("Sheet not found: " + sheetName);
+
+        Row headerRow = sheet.getRow(0);
+        if (headerRow == null) throw new IllegalStateException("Missing header row");
+
+        int lastCol = Math.max(1, headerRow.getLastCellNum());
+        List<String> headers = new ArrayList<>(lastCol);
+        for (int c = 0; c < lastCol; c++) {
+            headers.add(cells.read(headerRow.getCell(c)));
+        }
 
-            return new ExcelTemplate(sheetName, headers, columns);
+        List<ColumnInfo> columns = new ArrayList<>();
+        for (int c = 1; c < lastCol; c++) {
+            String rawHeader = headers.get(c);
+            if (rawHeader == null) rawHeader = "";
+            boolean mandatory = rawHeader.startsWith("M##");
+            String cleanName = mandatory ? rawHeader.substring(3) : rawHeader;
+            cleanName = cleanName == null ? "" : cleanName.trim();
+            columns.add(new ColumnInfo(c, rawHeader, cleanName, mandatory));
         }
+
+        // first row wins for duplicate names, as the old top-down scan did
+        Map<String, Integer> scenarioRows = new HashMap<>();
+        for (int r = sheet.getFirstRowNum() + 1; r <= sheet.getLastRowNum(); r++) {
+            Row row = sheet.getRow(r);
+            if (row == null) continue;
+            String first = cells.read(row.getCell(0));
+            if (first.isEmpty()) continue;
+            scenarioRows.putIfAbsent(scenarioKey(first), r);
+        }
+
+        return new ExcelTemplate(sheetName, headers, columns, scenarioRows);
     }
 
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("uuuu-MM-dd");
+    private static String scenarioKey(String scenarioName) {
+        return scenarioName.toLowerCase(Locale.ROOT);
+    }
 
+    static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("uuuu-MM-dd");
+
+    /**
+     * Splits a generated line on '|' into one value per template column, decoding Base64 for
+     * encode fields and checking whitespace and date formats. Errors name the column and the
+     * input up to the failing token. Runs once per line of an inbound file, so it walks the
+     * string by index and only builds the error prefix when it throws.
+     */
     public static List<DecodedColumn> decodeGeneratedString(String generatedString, ExcelTemplate template, Set<String> encodeFields) {
         Objects.requireNonNull(template, "Template is required");
-        List<String> tokens = Arrays.asList((generatedString == null ? "" : generatedString).split("\\|", -1));
-        List<DecodedColumn> decoded = new ArrayList<>();
+        String line = generatedString == null ? "" : generatedString;
         List<ColumnInfo> columns = template.getColumns();
+        boolean[] encodedColumns = template.encodedColumns(encodeFields);
 
-        if (tokens.size() > columns.size()) {
-            throw new IllegalArgumentException("Generated string contains more values than the template defines");
+        int tokenCount = 1;
+        for (int p = line.indexOf('|'); p >= 0; p = line.indexOf('|', p + 1)) tokenCount++;
+        if (tokenCount > columns.size()) {
+            throw new DecodeException(DecodeException.Reason.TOO_MANY_VALUES, null,
+                    "Generated string contains more values than the template defines", null);
         }
 
-        for (int i = 0; i < columns.size(); i++) {
+        List<DecodedColumn> decoded = new ArrayList<>(columns.size());
+        int start = 0;
+        for (int i = 0; i < tokenCount; i++) {
             ColumnInfo column = columns.get(i);
-            String token = i < tokens.size() ? tokens.get(i) : "";
-            boolean isEncoded = encodeFields != null && encodeFields.contains(column.getCleanName());
-            if (!isEncoded && !token.isEmpty() && (token.startsWith(" ") || token.endsWith(" "))) {
-                throw new IllegalArgumentException("Column '" + column.getCleanName()
+            int end = line.indexOf('|', start);
+            if (end < 0) end = line.length();
+            String token = line.substring(start, end);
+            boolean isEncoded = encodedColumns[i];
+            if (!isEncoded && !token.isEmpty() && (token.charAt(0) == ' ' || token.charAt(token.length() - 1) == ' ')) {
+                throw new DecodeException(DecodeException.Reason.UNEXPECTED_WHITESPACE, column, "Column '" + column.getCleanName()
                         + "' contains unexpected whitespace in token '" + token
-                        + "'. Prefix: '" + buildPrefixUpToToken(tokens, i) + "'");
+                        + "'. Prefix: '" + line.substring(0, end) + "'", null);
             }
-            if (!isEncoded && (token.matches(".*\\s-.*") || token.matches(".*-\\s.*"))) {
-                throw new IllegalArgumentException("Column '" + column.getCleanName()
+            if (!isEncoded && hasWhitespaceNextToHyphen(token)) {
+                throw new DecodeException(DecodeException.Reason.WHITESPACE_NEAR_HYPHEN, column, "Column '" + column.getCleanName()
                         + "' contains misplaced whitespace near '-' in token '" + token
-                        + "'. Prefix: '" + buildPrefixUpToToken(tokens, i) + "'");
+                        + "'. Prefix: '" + line.substring(0, end) + "'", null);
             }
             String decodedValue = token;
-            if (encodeFields != null && encodeFields.contains(column.getCleanName())) {
+            if (isEncoded) {
                 try {
                     decodedValue = new String(Base64.getDecoder().decode(token), StandardCharsets.UTF_8);
                 } catch (IllegalArgumentException e) {
-                    throw new IllegalArgumentException("Failed to decode column '" + column.getCleanName()
-                            + "' using token '" + token + "'. Prefix: '" + buildPrefixUpToToken(tokens, i) + "'", e);
+                    throw new DecodeException(DecodeException.Reason.INVALID_ENCODING, column, "Failed to decode column '" + column.getCleanName()
+                            + "' using token '" + token + "'. Prefix: '" + line.substring(0, end) + "'", e);
                 }
             }
-            if (!decodedValue.isEmpty() && isDateColumn(column)) {
-                validateDateFormat(decodedValue, column, tokens, i);
+            if (!decodedValue.isEmpty() && template.dateColumns[i]) {
+                validateDateFormat(decodedValue, column, line, end);
             }
             decoded.add(new DecodedColumn(column, token, decodedValue));
+            start = end + 1;
         }
 
-        if (tokens.size() < columns.size()) {
-            for (int i = tokens.size(); i < columns.size(); i++) {
-                ColumnInfo column = columns.get(i);
-                if (column.isMandatory()) {
-                    throw new IllegalArgumentException("Missing data for mandatory column: " + column.getCleanName());
-                }
+        // columns past the last token are empty, which only mandatory ones reject
+        for (int i = tokenCount; i < columns.size(); i++) {
+            ColumnInfo column = columns.get(i);
+            if (column.isMandatory()) {
+                throw new DecodeException(DecodeException.Reason.MISSING_MANDATORY, column,
+                        "Missing data for mandatory column: " + column.getCleanName(), null);
             }
+            decoded.add(new DecodedColumn(column, "", ""));
         }
 
         return decoded;
     }
 
-    private static void validateDateFormat(String value, ColumnInfo column, List<String> tokens, int index) {
+    /**
+     * Same result as token.matches(".*\\s-.*") || token.matches(".*-\\s.*") without the
+     * regexes. '.' does not cross line terminators, so the match only counts when there is no
+     * line terminator before the pair or after it.
+     */
+    static boolean hasWhitespaceNextToHyphen(String token) {
+        int dash = token.indexOf('-');
+        if (dash < 0) return false;
+        int firstTerminator = -1;
+        int lastTerminator = -1;
+        for (; dash >= 0; dash = token.indexOf('-', dash + 1)) {
+            boolean before = dash > 0 && isRegexWhitespace(token.charAt(dash - 1));
+            boolean after = dash + 1 < token.length() && isRegexWhitespace(token.charAt(dash + 1));
+            if (!before && !after) continue;
+            if (firstTerminator < 0) {
+                firstTerminator = token.length();
+                for (int i = 0; i < token.length(); i++) {
+                    if (isLineTerminator(token.charAt(i))) {
+                        if (firstTerminator == token.length()) firstTerminator = i;
+                        lastTerminator = i;
+                    }
+                }
+            }
+            if (before && firstTerminator >= dash - 1 && lastTerminator <= dash) return true;
+            if (after && firstTerminator >= dash && lastTerminator <= dash + 1) return true;
+        }
+        return false;
+    }
+
+    // \s in java.util.regex
+    private static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // characters '.' does not match
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static void validateDateFormat(String value, ColumnInfo column, String line, int prefixEnd) {
+        if (isPlainDate(value)) return;
         try {
             LocalDate.parse(value, DATE_FORMATTER);
         } catch (DateTimeParseException ex) {
-            throw new IllegalArgumentException("Column '" + column.getCleanName()
+            throw new DecodeException(DecodeException.Reason.INVALID_DATE, column, "Column '" + column.getCleanName()
                     + "' expects yyyy-MM-dd, but got '" + value
-                    + "'. Prefix: '" + buildPrefixUpToToken(tokens, index) + "'", ex);
+                    + "'. Prefix: '" + line.substring(0, prefixEnd) + "'", ex);
         }
     }
 
+    /**
+     * True for dddd-dd-dd with month 1-12 and day 1-31, all of which DATE_FORMATTER accepts
+     * (its smart resolver moves e.g. 02-30 to the month's last day). Anything else still goes
+     * through the formatter, so this only skips its cost for the common case.
+     */
+    static boolean isPlainDate(String value) {
+        if (value.length() != 10 || value.charAt(4) != '-' || value.charAt(7) != '-') return false;
+        for (int i = 0; i < 10; i++) {
+            if (i != 4 && i != 7 && (value.charAt(i) < '0' || value.charAt(i) > '9')) return false;
+        }
+        int month = (value.charAt(5) - '0') * 10 + (value.charAt(6) - '0');
+        int day = (value.charAt(8) - '0') * 10 + (value.charAt(9) - '0');
+        return month >= 1 && month <= 12 && day >= 1 && day <= 31;
+    }
+
     private static boolean isDateColumn(ColumnInfo column) {
         if (column == null || column.getCleanName() == null) return false;
         String lower = column.getCleanName().toLowerCase(Locale.ROOT);
         return lower.contains("date") || lower.contains("dob") || lower.contains("expiry") || lower.contains("valid");
     }
 
-    private static String buildPrefixUpToToken(List<String> tokens, int index) {
-        if (tokens == null || tokens.isEmpty() || index < 0) return "";
-        int end = Math.min(index, tokens.size() - 1);
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i <= end; i++) {
-            if (i > 0) sb.append("|");
-            sb.append(tokens.get(i));
-        }
-        return sb.toString();
-    }
-
     public static void appendDecodedRow(File excelFile, ExcelTemplate template,
                                         String scenarioName, List<DecodedColumn> decodedColumns) throws IOException {
+        appendDecodedRows(excelFile, template, Collections.singletonList(new DecodedRow(scenarioName, decodedColumns)));
+    }
+
+    /**
+     * Appends all rows below the last row of the template's sheet with a single write of the
+     * file. A workbook within the cache budget is updated in the cache, where it stays parsed
+     * for the next template load; a larger one is never kept, so its sheet is rewritten as a
+     * stream instead of being parsed whole just to add a row.
+     */
+    public static void appendDecodedRows(File excelFile, ExcelTemplate template, List<DecodedRow> rows) throws IOException {
         Objects.requireNonNull(excelFile, "Excel file is required");
         Objects.requireNonNull(template, "Template is required");
-
-        Workbook workbook = null;
-        try (FileInputStream fis = new FileInputStream(excelFile)) {
-            workbook = new XSSFWorkbook(fis);
+        Objects.requireNonNull(rows, "Rows are required");
+        if (rows.isEmpty()) return;
+
+        WorkbookCache cache = WorkbookCache.shared();
+        if (!cache.fits(excelFile)) {
+            List<SortedMap<Integer, String>> cells = new ArrayList<>(rows.size());
+            for (DecodedRow row : rows) {
+                SortedMap<Integer, String> rowCells = new TreeMap<>();
+                rowCells.put(0, row.getScenarioName());
+                for (DecodedColumn decoded : row.getColumns()) {
+                    rowCells.put(decoded.getColumn().getColumnIndex(), decoded.getDecodedValue());
+                }
+                cells.add(rowCells);
+            }
+            XlsxRowAppender.append(excelFile, template.getSheetName(), cells);
+            cache.invalidate(excelFile);
+            return;
         }
 
-        try {
+        // the cached workbook is written back and stays cached, so repeated appends parse once
+        cache.update(excelFile, workbook -> {
             Sheet sheet = workbook.getSheet(template.getSheetName());
             if (sheet == null) throw new IllegalArgumentException("Sheet not found: " + template.getSheetName());
 
             int newRowIndex = sheet.getLastRowNum() + 1;
-            Row scenarioRow = sheet.createRow(newRowIndex);
-            scenarioRow.createCell(0).setCellValue(scenarioName);
-            for (DecodedColumn decoded : decodedColumns) {
-                scenarioRow.createCell(decoded.getColumn().getColumnIndex())
-                        .setCellValue(decoded.getDecodedValue());
-            }
-
-            try (FileOutputStream fos = new FileOutputStream(excelFile)) {
-                workbook.write(fos);
-            }
-        } finally {
-            if (workbook != null) {
-                workbook.close();
+            for (DecodedRow row : rows) {
+                Row scenarioRow = sheet.createRow(newRowIndex++);
+                scenarioRow.createCell(0).setCellValue(row.getScenarioName());
+                for (DecodedColumn decoded : row.getColumns()) {
+                    scenarioRow.createCell(decoded.getColumn().getColumnIndex())
+                            .setCellValue(decoded.getDecodedValue());
+                }
             }
-        }
+            return null;
+        });
     }
 
     public static final class ExcelTemplate {
         private final String sheetName;
         private final List<String> headerValues;
         private final List<ColumnInfo> columns;
+        // lower-cased scenario name -> row number, empty unless compiled from a sheet
+        private final Map<String, Integer> scenarioRows;
+        // per column, the ID generator spec if it is filled per record (see idSpecFor)
+        private final String[] idSpecs;
+        // per column, whether values must be yyyy-MM-dd (see isDateColumn)
+        private final boolean[] dateColumns;
+        // columns encoded for the last set of encode fields seen, reused while it stays equal
+        private volatile EncodeMask encodeMask;
 
         public ExcelTemplate(String sheetName, List<String> headerValues, List<ColumnInfo> columns) {
+            this(sheetName, headerValues, columns, Collections.emptyMap());
+        }
+
+        ExcelTemplate(String sheetName, List<String> headerValues, List<ColumnInfo> columns,
+                      Map<String, Integer> scenarioRows) {
             this.sheetName = sheetName;
             this.headerValues = Collections.unmodifiableList(new ArrayList<>(headerValues));
             this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+            this.scenarioRows = Collections.unmodifiableMap(scenarioRows);
+            this.idSpecs = new String[this.columns.size()];
+            this.dateColumns = new boolean[this.columns.size()];
+            for (int i = 0; i < idSpecs.length; i++) {
+                idSpecs[i] = idSpecFor(this.columns.get(i));
+                dateColumns[i] = isDateColumn(this.columns.get(i));
+            }
         }
 
         public String getSheetName() {
@@ -226,6 +343,36 @@ public class ExcelProcessor {
         public List<ColumnInfo> getColumns() {
             return columns;
         }
+
+        // Row of the scenario (case-insensitive), or -1 if the sheet has none by that name
+        public int getScenarioRow(String scenarioName) {
+            if (scenarioName == null) return -1;
+            Integer row = scenarioRows.get(scenarioKey(scenarioName));
+            return row == null ? -1 : row;
+        }
+
+        // encoded flag per entry of getColumns()
+        boolean[] encodedColumns(Set<String> encodeFields) {
+            Set<String> fields = encodeFields == null ? Collections.emptySet() : encodeFields;
+            EncodeMask mask = encodeMask;
+            if (mask != null && mask.fields.equals(fields)) return mask.encoded;
+            boolean[] encoded = new boolean[columns.size()];
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = fields.contains(columns.get(i).getCleanName());
+            }
+            encodeMask = new EncodeMask(new HashSet<>(fields), encoded);
+            return encoded;
+        }
+    }
+
+    private static final class EncodeMask {
+        private final Set<String> fields;
+        private final boolean[] encoded;
+
+        private EncodeMask(Set<String> fields, boolean[] encoded) {
+            this.fields = fields;
+            this.encoded = encoded;
+        }
     }
 
     public static final class ColumnInfo {
@@ -282,99 +429,192 @@ public class ExcelProcessor {
         }
     }
 
+    /**
+     * Thrown by decodeGeneratedString; says which check failed and for which column, so batch
+     * validation can report errors without parsing the message.
+     */
+    public static final class DecodeException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        public enum Reason {
+            TOO_MANY_VALUES, UNEXPECTED_WHITESPACE, WHITESPACE_NEAR_HYPHEN, INVALID_ENCODING, INVALID_DATE, MISSING_MANDATORY
+        }
+
+        private final Reason reason;
+        // ColumnInfo is not serializable; a deserialized exception keeps only the reason and message
+        private final transient ColumnInfo column;
+
+        public DecodeException(Reason reason, ColumnInfo column, String message, Throwable cause) {
+            super(message, cause);
+            this.reason = reason;
+            this.column = column;
+        }
+
+        public Reason getReason() {
+            return reason;
+        }
+
+        // null when the error is about the whole line
+        public ColumnInfo getColumn() {
+            return column;
+        }
+    }
+
+    public static final class DecodedRow {
+        private final String scenarioName;
+        private final List<DecodedColumn> columns;
+
+        public DecodedRow(String scenarioName, List<DecodedColumn> columns) {
+            this.scenarioName = scenarioName == null ? "" : scenarioName;
+            this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        }
+
+        public String getScenarioName() {
+            return scenarioName;
+        }
+
+        public List<DecodedColumn> getColumns() {
+            return columns;
+        }
+    }
+
     // Main processing: header contains M## prefix for mandatory columns.
     // It returns a single string where values (or placeholders) are separated by '|'
     public static String processExcel(File excelFile, String sheetName, String scenarioName, Set<String> encodeFields) throws IOException {
-        try (FileInputStream fis = new FileInputStream(excelFile);
-             Workbook wb = new XSSFWorkbook(fis)) {
+        Objects.requireNonNull(sheetName, "Sheet name is required");
+        // template and workbook come from the same version of the file
+        return WorkbookCache.shared().read(excelFile, templateKey(sheetName), wb -> compileTemplate(wb, sheetName),
+                (wb, template) -> generate(cellReader(wb), wb.getSheet(sheetName), template, scenarioName, encodeFields));
+    }
+
+    /**
+     * Writes one generated line per scenario row of the sheet, in sheet order, each ended by
+     * '\n'. Rows whose name fails the filter are skipped (null keeps all). Cells are read
+     * from the workbook on the calling thread; identifier substitution and encoding run on
+     * the pool. Returns the number of lines written.
+     */
+    public static int processAll(File excelFile, String sheetName, Predicate<String> scenarioFilter,
+                                 Set<String> encodeFields, Writer out) throws IOException {
+        return processAll(excelFile, sheetName, scenarioFilter, encodeFields, out, ForkJoinPool.commonPool());
+    }
 
+    public static int processAll(File excelFile, String sheetName, Predicate<String> scenarioFilter,
+                                 Set<String> encodeFields, Writer out, ForkJoinPool pool) throws IOException {
+        Objects.requireNonNull(sheetName, "Sheet name is required");
+        Objects.requireNonNull(out, "Writer is required");
+        Objects.requireNonNull(pool, "Pool is required");
+        return WorkbookCache.shared().read(excelFile, templateKey(sheetName), wb -> compileTemplate(wb, sheetName), (wb, template) -> {
+            CellReader cells = cellReader(wb);
             Sheet sheet = wb.getSheet(sheetName);
-            if (sheet == null) throw new IllegalArgumentException("Sheet not found: " + sheetName);
-
-            Row headerRow = sheet.getRow(0);
-            if (headerRow == null) throw new IllegalStateException("Missing header row");
-
-            // Find scenario row
-            Row scenarioRow = null;
-            for (int r = sheet.getFirstRowNum() + 1; r <= sheet.getLastRowNum(); r++) {
-                Row row = sheet.getRow(r);
-                if (row == null) continue;
-                String first = getCellValue(row.getCell(0));
-                if (scenarioName.equalsIgnoreCase(first)) {
-                    scenarioRow = row;
-                    break;
+            boolean[] encodedColumns = template.encodedColumns(encodeFields);
+            String[][] values = new String[BATCH_BLOCK_ROWS][];
+            String[] lines = new String[BATCH_BLOCK_ROWS];
+            int written = 0;
+            int r = sheet.getFirstRowNum() + 1;
+            int last = sheet.getLastRowNum();
+            while (r <= last) {
+                int n = 0;
+                for (; r <= last && n < BATCH_BLOCK_ROWS; r++) {
+                    Row row = sheet.getRow(r);
+                    if (row == null) continue;
+                    String name = cells.read(row.getCell(0));
+                    if (name.isEmpty() || (scenarioFilter != null && !scenarioFilter.test(name))) continue;
+                    values[n++] = scenarioValues(cells, row, template);
                 }
-            }
-            if (scenarioRow == null) throw new IllegalStateException("Scenario '" + scenarioName + "' not found");
-
-            StringBuilder sb = new StringBuilder();
-
-            // loop columns starting from 1 (assuming col 0 is Name label)
-            int lastCol = Math.max(1, headerRow.getLastCellNum());
-            for (int c = 1; c < lastCol; c++) {
-                String rawHeader = getCellValue(headerRow.getCell(c));
-                if (rawHeader == null) rawHeader = "";
-                boolean mandatory = rawHeader.startsWith("M##");
-                String cleanName = mandatory ? rawHeader.substring(3) : rawHeader;
-
-                if (!mandatory) {
-                    // maintain delimiter position
-                    sb.append("|");
-                    continue;
+                int count = n;
+                runParallel(pool, () -> IntStream.range(0, count).parallel()
+                        .forEach(i -> lines[i] = formatRecord(values[i], template, encodedColumns)));
+                for (int i = 0; i < count; i++) {
+                    out.write(lines[i]);
+                    out.write('\n');
                 }
+                written += count;
+            }
+            out.flush();
+            return written;
+        });
+    }
 
-                String value = getCellValue(scenarioRow.getCell(c));
-                if ("NRIC/FIN".equalsIgnoreCase(cleanName)) {
-                    value = Utils.generateNRIC();
-                }
+    private static void runParallel(ForkJoinPool pool, Runnable work) throws IOException {
+        try {
+            pool.submit(work).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while generating records");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
 
-                if (encodeFields.contains(cleanName)) {
-                    String encoded = Base64.getEncoder().encodeToString(value.trim().getBytes(StandardCharsets.UTF_8));
-                    sb.append(encoded);
-                } else {
-                    sb.append(value);
-                }
+    private static String generate(CellReader cells, Sheet sheet, ExcelTemplate template, String scenarioName,
+                                   Set<String> encodeFields) {
+        int r = template.getScenarioRow(scenarioName);
+        if (r < 0) throw new IllegalStateException("Scenario '" + scenarioName + "' not found");
+        return formatRecord(scenarioValues(cells, sheet.getRow(r), template), template, template.encodedColumns(encodeFields));
+    }
+
+    // template values of the mandatory columns; identifier columns are left null
+    private static String[] scenarioValues(CellReader cells, Row scenarioRow, ExcelTemplate template) {
+        List<ColumnInfo> columns = template.getColumns();
+        String[] values = new String[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            ColumnInfo column = columns.get(i);
+            if (column.isMandatory() && template.idSpecs[i] == null) {
+                values[i] = cells.read(scenarioRow.getCell(column.getColumnIndex()));
+            }
+        }
+        return values;
+    }
+
+    private static String formatRecord(String[] values, ExcelTemplate template, boolean[] encodedColumns) {
+        List<ColumnInfo> columns = template.getColumns();
+        StringBuilder sb = new StringBuilder();
 
+        // columns start from 1 (col 0 is the Name label)
+        for (int i = 0; i < columns.size(); i++) {
+            if (!columns.get(i).isMandatory()) {
+                // maintain delimiter position
                 sb.append("|");
+                continue;
+            }
+
+            // must be unique per record, so the template's value is only a placeholder
+            String idSpec = template.idSpecs[i];
+            String value = idSpec != null ? IdPool.shared(idSpec).next() : values[i];
+
+            if (encodedColumns[i]) {
+                String encoded = Base64.getEncoder().encodeToString(value.trim().getBytes(StandardCharsets.UTF_8));
+                sb.append(encoded);
+            } else {
+                sb.append(value);
             }
 
-            // remove trailing delimiter if present
-            if (sb.length() > 0 && sb.charAt(sb.length() - 1) == '|') sb.setLength(sb.length() - 1);
-            return sb.toString();
+            sb.append("|");
         }
+
+        // remove trailing delimiter if present
+        if (sb.length() > 0 && sb.charAt(sb.length() - 1) == '|') sb.setLength(sb.length() - 1);
+        return sb.toString();
     }
 
-    // robust cell reader: handles formula, dates, numbers, boolean
+    // ID generator spec for columns filled per record, null for ordinary columns
+    private static String idSpecFor(ColumnInfo column) {
+        String cleanName = column.getCleanName();
+        // FIN with the F prefix, as Utils.generateNRIC() gives
+        if ("NRIC/FIN".equalsIgnoreCase(cleanName)) return "nric:" + NricGenerator.Prefix.F;
+        if (EXTERNAL_ID_HEADER.equalsIgnoreCase(cleanName)) return "uuid";
+        return null;
+    }
+
+    /**
+     * Value of a single cell, read as {@link CellReader#read} does. Each call sets up a fresh
+     * formatter and evaluator, so code reading many cells should keep one CellReader.
+     */
     public static String getCellValue(Cell cell) {
         if (cell == null) return "";
-        DataFormatter df = new DataFormatter();
-        try {
-            if (cell.getCellType() == CellType.FORMULA) {
-                FormulaEvaluator ev = cell.getSheet().getWorkbook().getCreationHelper().createFormulaEvaluator();
-                CellValue cv = ev.evaluate(cell);
-                if (cv == null) return "";
-                switch (cv.getCellType()) {
-                    case STRING: return cv.getStringValue().trim();
-                    case BOOLEAN: return String.valueOf(cv.getBooleanValue());
-                    case NUMERIC:
-                        if (DateUtil.isCellDateFormatted(cell)) {
-                            return new SimpleDateFormat(DATE_FORMAT).format(DateUtil.getJavaDate(cv.getNumberValue()));
-                        } else {
-                            return df.formatCellValue(cell, ev).trim();
-                        }
-                    default: return "";
-                }
-            } else if (cell.getCellType() == CellType.NUMERIC) {
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    return new SimpleDateFormat(DATE_FORMAT).format(cell.getDateCellValue());
-                } else {
-                    return df.formatCellValue(cell).trim();
-                }
-            } else {
-                return df.formatCellValue(cell).trim();
-            }
-        } catch (Exception e) {
-            return df.formatCellValue(cell).trim();
-        }
+        return new CellReader(cell.getSheet().getWorkbook()).read(cell);
     }
 }
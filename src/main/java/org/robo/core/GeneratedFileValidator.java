@@ -0,0 +1,289 @@
+package org.robo.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks every line of a generated file against a template with the same rules as
+ * {@link ExcelProcessor#decodeGeneratedString}. The file is streamed in chunks of lines that
+ * are validated in parallel while the next chunks are read; results are merged in file
+ * order, so the errors reported, and where validation stops, do not depend on timing.
+ */
+public final class GeneratedFileValidator {
+
+    public static final int DEFAULT_CHUNK_LINES = 2048;
+
+    private final ExcelProcessor.ExcelTemplate template;
+    private final Set<String> encodeFields;
+    private final int chunkLines;
+
+    public GeneratedFileValidator(ExcelProcessor.ExcelTemplate template, Set<String> encodeFields) {
+        this(template, encodeFields, DEFAULT_CHUNK_LINES);
+    }
+
+    public GeneratedFileValidator(ExcelProcessor.ExcelTemplate template, Set<String> encodeFields, int chunkLines) {
+        if (chunkLines < 1) throw new IllegalArgumentException("Chunk size must be at least 1 line");
+        this.template = Objects.requireNonNull(template, "Template is required");
+        this.encodeFields = encodeFields == null ? Collections.emptySet() : encodeFields;
+        this.chunkLines = chunkLines;
+    }
+
+    // maxErrors <= 0 checks the whole file
+    public Report validate(File input, int maxErrors) throws IOException {
+        return validate(input, maxErrors, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Validates the UTF-8 file line by line; blank lines are skipped. Stops at the line with
+     * the maxErrors-th error, counting from the top of the file.
+     */
+    public Report validate(File input, int maxErrors, ForkJoinPool pool) throws IOException {
+        Objects.requireNonNull(input, "Input file is required");
+        Objects.requireNonNull(pool, "Pool is required");
+        long started = System.nanoTime();
+        int limit = maxErrors <= 0 ? Integer.MAX_VALUE : maxErrors;
+        // enough chunks in flight to keep the pool busy while the reader stays ahead
+        int window = Math.max(2, pool.getParallelism() * 2);
+
+        ArrayDeque<CompletableFuture<Chunk>> inFlight = new ArrayDeque<>();
+        List<LineError> errors = new ArrayList<>();
+        long linesChecked = 0;
+        long blankLines = 0;
+        boolean stopped = false;
+        try (BufferedReader reader = Files.newBufferedReader(input.toPath(), StandardCharsets.UTF_8)) {
+            long lineNumber = 0;
+            boolean eof = false;
+            while (!eof && !stopped) {
+                String[] lines = new String[chunkLines];
+                int n = 0;
+                String line;
+                while (n < chunkLines && (line = reader.readLine()) != null) lines[n++] = line;
+                eof = n < chunkLines;
+                if (n > 0) {
+                    Chunk chunk = new Chunk(lineNumber + 1, lines, n);
+                    lineNumber += n;
+                    inFlight.add(CompletableFuture.supplyAsync(() -> check(chunk), pool));
+                }
+
+                while (!inFlight.isEmpty() && (eof || inFlight.size() >= window)) {
+                    Chunk done = join(inFlight.poll());
+                    int checkedInChunk = done.count;
+                    for (LineError error : done.errors) {
+                        errors.add(error);
+                        if (errors.size() == limit) {
+                            // nothing after the last reported error counts as checked
+                            checkedInChunk = (int) (error.line - done.firstLine) + 1;
+                            stopped = true;
+                            break;
+                        }
+                    }
+                    linesChecked += checkedInChunk;
+                    blankLines += done.blankLinesBefore(checkedInChunk);
+                    if (stopped) break;
+                }
+            }
+        } finally {
+            for (CompletableFuture<Chunk> f : inFlight) f.cancel(false);
+        }
+        return new Report(input, template.getSheetName(), linesChecked, blankLines, errors, stopped,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private Chunk check(Chunk chunk) {
+        for (int i = 0; i < chunk.count; i++) {
+            String line = chunk.lines[i];
+            if (line.isBlank()) continue;
+            try {
+                ExcelProcessor.decodeGeneratedString(line, template, encodeFields);
+            } catch (ExcelProcessor.DecodeException e) {
+                ExcelProcessor.ColumnInfo column = e.getColumn();
+                chunk.errors.add(new LineError(chunk.firstLine + i, column == null ? "" : column.getCleanName(),
+                        e.getReason(), e.getMessage()));
+            }
+        }
+        return chunk;
+    }
+
+    private static Chunk join(CompletableFuture<Chunk> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private static final class Chunk {
+        private final long firstLine;
+        private final String[] lines;
+        private final int count;
+        private final List<LineError> errors = new ArrayList<>();
+
+        private Chunk(long firstLine, String[] lines, int count) {
+            this.firstLine = firstLine;
+            this.lines = lines;
+            this.count = count;
+        }
+
+        private int blankLinesBefore(int end) {
+            int blank = 0;
+            for (int i = 0; i < end; i++) if (lines[i].isBlank()) blank++;
+            return blank;
+        }
+    }
+
+    public static final class LineError {
+        private final long line;
+        private final String column;
+        private final ExcelProcessor.DecodeException.Reason reason;
+        private final String message;
+
+        public LineError(long line, String column, ExcelProcessor.DecodeException.Reason reason, String message) {
+            this.line = line;
+            this.column = column == null ? "" : column;
+            this.reason = reason;
+            this.message = message;
+        }
+
+        // 1-based line number in the input file
+        public long getLine() {
+            return line;
+        }
+
+        // Clean column name, empty when the whole line is at fault
+        public String getColumn() {
+            return column;
+        }
+
+        public ExcelProcessor.DecodeException.Reason getReason() {
+            return reason;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    public static final class Report {
+        private final File input;
+        private final String sheetName;
+        private final long linesChecked;
+        private final long blankLines;
+        private final List<LineError> errors;
+        private final boolean stoppedEarly;
+        private final long elapsedMillis;
+
+        public Report(File input, String sheetName, long linesChecked, long blankLines, List<LineError> errors,
+                      boolean stoppedEarly, long elapsedMillis) {
+            this.input = input;
+            this.sheetName = sheetName;
+            this.linesChecked = linesChecked;
+            this.blankLines = blankLines;
+            this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+            this.stoppedEarly = stoppedEarly;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public File getInput() {
+            return input;
+        }
+
+        // Lines read and checked, blank ones included; less than the file when stopped early
+        public long getLinesChecked() {
+            return linesChecked;
+        }
+
+        public long getBlankLines() {
+            return blankLines;
+        }
+
+        public long getValidLines() {
+            return linesChecked - blankLines - errors.size();
+        }
+
+        // One entry per invalid line, in file order
+        public List<LineError> getErrors() {
+            return errors;
+        }
+
+        // True when the error limit was reached; lines after the last error were not checked
+        public boolean isStoppedEarly() {
+            return stoppedEarly;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public Map<ExcelProcessor.DecodeException.Reason, Integer> getErrorCountsByReason() {
+            Map<ExcelProcessor.DecodeException.Reason, Integer> counts = new EnumMap<>(ExcelProcessor.DecodeException.Reason.class);
+            for (LineError e : errors) counts.merge(e.getReason(), 1, Integer::sum);
+            return counts;
+        }
+
+        public Map<String, Integer> getErrorCountsByColumn() {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (LineError e : errors) counts.merge(e.getColumn().isEmpty() ? "(whole line)" : e.getColumn(), 1, Integer::sum);
+            return counts;
+        }
+
+        // One line for the log, e.g. "12000 lines checked: 11990 valid, 10 invalid"
+        public String getSummary() {
+            return linesChecked + " lines checked: " + getValidLines() + " valid, " + errors.size() + " invalid"
+                    + (blankLines > 0 ? ", " + blankLines + " blank" : "")
+                    + (stoppedEarly ? " (stopped at the error limit)" : "");
+        }
+
+        public void writeSummary(File reportFile) throws IOException {
+            try (Writer out = Files.newBufferedWriter(reportFile.toPath(), StandardCharsets.UTF_8)) {
+                writeSummary(out);
+            }
+        }
+
+        public void writeSummary(Writer out) throws IOException {
+            out.write("Validation report for " + input.getAbsolutePath() + "\n");
+            out.write("Template sheet: " + sheetName + "\n");
+            out.write("Lines checked: " + linesChecked + "\n");
+            out.write("Valid lines: " + getValidLines() + "\n");
+            out.write("Invalid lines: " + errors.size() + "\n");
+            out.write("Blank lines skipped: " + blankLines + "\n");
+            if (stoppedEarly) out.write("Stopped early: error limit reached, the rest of the file was not checked\n");
+            out.write("Time: " + elapsedMillis + " ms\n");
+            if (errors.isEmpty()) {
+                out.flush();
+                return;
+            }
+
+            out.write("\nErrors by reason:\n");
+            for (Map.Entry<ExcelProcessor.DecodeException.Reason, Integer> e : getErrorCountsByReason().entrySet()) {
+                out.write("  " + e.getKey() + ": " + e.getValue() + "\n");
+            }
+            out.write("\nErrors by column:\n");
+            for (Map.Entry<String, Integer> e : getErrorCountsByColumn().entrySet()) {
+                out.write("  " + e.getKey() + ": " + e.getValue() + "\n");
+            }
+            out.write("\nErrors:\n");
+            for (LineError e : errors) {
+                out.write("line " + e.getLine() + (e.getColumn().isEmpty() ? "" : ", column " + e.getColumn())
+                        + ", " + e.getReason() + ": " + e.getMessage() + "\n");
+            }
+            out.flush();
+        }
+    }
+}
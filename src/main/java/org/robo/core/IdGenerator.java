@@ -0,0 +1,11 @@
+package org.robo.core;
+
+/**
+ * Source of unique identifiers for generated columns. Implementations need not be
+ * thread-safe; {@link IdPool} serialises access.
+ */
+public interface IdGenerator {
+
+    // Next identifier; throws IllegalStateException once the generator is exhausted
+    String next();
+}
@@ -0,0 +1,168 @@
+package org.robo.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Built-in {@link IdGenerator}s and the spec strings that name them:
+ * {@code uuid}, {@code nric:<prefix>} and {@code pattern:<pattern>}.
+ *
+ * <p>In a pattern, {@code #} is a digit, {@code ?} an upper-case letter and {@code *} a
+ * digit or upper-case letter; everything else is literal, e.g. {@code ST-####}. Pattern
+ * IDs are a counter spelled out in the placeholders and the counter is persisted in an
+ * {@link IdHighWaterMark}, so they stay unique across runs.</p>
+ */
+public final class IdGenerators {
+
+    // counter values reserved per high-water mark update, less for small patterns
+    public static final int DEFAULT_RESERVE_BLOCK = 1024;
+    // IDs prefetched by a shared pool for a pattern, which spend the persisted counter
+    public static final int PATTERN_POOL_CAPACITY = 64;
+
+    private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String ALPHANUMERIC = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private IdGenerators() {
+    }
+
+    // Upper-case random UUIDs, the same shape as the GUIDs in the templates
+    public static IdGenerator uuid() {
+        return () -> UUID.randomUUID().toString().toUpperCase(Locale.ROOT);
+    }
+
+    public static IdGenerator nric(NricGenerator.Prefix prefix) {
+        NricGenerator generator = new NricGenerator();
+        return () -> generator.next(prefix);
+    }
+
+    // prefix followed by a zero-padded counter of width digits, e.g. ("EXT-", 6) gives EXT-000001
+    public static IdGenerator sequential(String prefix, int width, IdHighWaterMark marks) {
+        if (width < 1 || width > 18) throw new IllegalArgumentException("Width must be between 1 and 18");
+        StringBuilder pattern = new StringBuilder();
+        for (char c : prefix.toCharArray()) pattern.append(isPlaceholder(c) ? "\\" + c : String.valueOf(c));
+        for (int i = 0; i < width; i++) pattern.append('#');
+        return pattern(pattern.toString(), marks);
+    }
+
+    // a backslash makes the next placeholder character literal
+    public static IdGenerator pattern(String pattern, IdHighWaterMark marks) {
+        return new PatternGenerator(pattern, marks);
+    }
+
+    public static IdGenerator fromSpec(String spec, IdHighWaterMark marks) {
+        if ("uuid".equals(spec)) return uuid();
+        if (spec.startsWith("nric:") && spec.length() == 6) return nric(NricGenerator.Prefix.of(spec.charAt(5)));
+        if (spec.startsWith("pattern:") && spec.length() > 8) return pattern(spec.substring(8), marks);
+        throw new IllegalArgumentException("Unknown ID generator spec: " + spec);
+    }
+
+    /**
+     * Spec for a field described by a RagFieldRecord-style format and example value, or
+     * null when the field does not look like a generated identifier. An explicit pattern
+     * or UUID/NRIC keyword in the format wins; otherwise the digits of the example become
+     * the counter, so "ST-0001" gives "pattern:ST-####".
+     */
+    public static String specFor(String format, String example) {
+        String f = format == null ? "" : format.trim();
+        String lower = f.toLowerCase(Locale.ROOT);
+        String ex = example == null ? "" : example.trim();
+        if (lower.equals("uuid") || lower.equals("guid")) return "uuid";
+        if (lower.contains("nric") || lower.equals("fin")) {
+            char first = ex.isEmpty() ? 'F' : Character.toUpperCase(ex.charAt(0));
+            return "nric:" + ("STFGM".indexOf(first) >= 0 ? first : 'F');
+        }
+        if (f.indexOf('#') >= 0 || f.indexOf('?') >= 0 || f.indexOf('*') >= 0) return "pattern:" + f;
+        if (looksLikeUuid(ex)) return "uuid";
+        if (NricGenerator.isValid(ex)) return "nric:" + Character.toUpperCase(ex.charAt(0));
+        boolean hasDigit = false;
+        StringBuilder pattern = new StringBuilder(ex.length());
+        for (char c : ex.toCharArray()) {
+            if (c >= '0' && c <= '9') {
+                pattern.append('#');
+                hasDigit = true;
+            } else {
+                pattern.append(isPlaceholder(c) ? "\\" + c : String.valueOf(c));
+            }
+        }
+        return hasDigit ? "pattern:" + pattern : null;
+    }
+
+    private static boolean looksLikeUuid(String s) {
+        if (s.length() != 36) return false;
+        try {
+            UUID.fromString(s);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean isPlaceholder(char c) {
+        return c == '#' || c == '?' || c == '*' || c == '\\';
+    }
+
+    private static final class PatternGenerator implements IdGenerator {
+        private final String key;
+        private final IdHighWaterMark marks;
+        private final char[] template;
+        // alphabet per placeholder position, null for literals
+        private final String[] alphabets;
+        private final long capacity;
+        private final long reserveBlock;
+        private long next;
+        private long reservedEnd;
+
+        private PatternGenerator(String pattern, IdHighWaterMark marks) {
+            this.key = "pattern:" + pattern;
+            this.marks = marks;
+            StringBuilder literal = new StringBuilder();
+            List<String> alphabetList = new ArrayList<>();
+            long cap = 1;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                String alphabet = null;
+                if (c == '\\' && i + 1 < pattern.length()) {
+                    c = pattern.charAt(++i);
+                } else if (c == '#') {
+                    alphabet = ALPHANUMERIC.substring(0, 10);
+                } else if (c == '?') {
+                    alphabet = LETTERS;
+                } else if (c == '*') {
+                    alphabet = ALPHANUMERIC;
+                }
+                literal.append(alphabet == null ? c : '0');
+                alphabetList.add(alphabet);
+                if (alphabet != null) cap = cap > Long.MAX_VALUE / alphabet.length() ? Long.MAX_VALUE : cap * alphabet.length();
+            }
+            if (cap == 1) throw new IllegalArgumentException("Pattern has no placeholders: " + pattern);
+            this.template = literal.toString().toCharArray();
+            this.alphabets = alphabetList.toArray(new String[0]);
+            this.capacity = cap;
+            // a crash or exit loses at most one block, so keep it a small share of the space
+            this.reserveBlock = Math.max(1, Math.min(DEFAULT_RESERVE_BLOCK, cap / 64));
+        }
+
+        @Override
+        public String next() {
+            if (next == reservedEnd) {
+                long block = marks == null ? Long.MAX_VALUE - next : reserveBlock;
+                if (marks != null) next = marks.reserve(key, block);
+                reservedEnd = next + block;
+            }
+            // counting starts at 1, so the all-zero ID is never issued
+            long n = ++next;
+            if (n >= capacity) throw new IllegalStateException("All IDs for " + key + " have been issued");
+            char[] id = template.clone();
+            // least significant placeholder last, like an odometer
+            for (int i = id.length - 1; i >= 0; i--) {
+                String alphabet = alphabets[i];
+                if (alphabet == null) continue;
+                id[i] = alphabet.charAt((int) (n % alphabet.length()));
+                n /= alphabet.length();
+            }
+            return new String(id);
+        }
+    }
+}
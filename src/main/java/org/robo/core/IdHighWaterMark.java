@@ -0,0 +1,117 @@
+package org.robo.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persisted counters for sequential identifiers, one per key, in a properties file.
+ * Counters are handed out in reserved blocks and the file is updated before a block is
+ * used, so a crash can skip numbers but never reissue one in a later run.
+ *
+ * <p>Each reservation re-reads the file while holding an OS lock on a sibling ".lock"
+ * file, so concurrent runs of the app, or any other process using this class on the same
+ * file, get disjoint blocks.</p>
+ */
+public final class IdHighWaterMark {
+
+    public static final String DEFAULT_FILE_NAME = ".robosftp-id-high-water.properties";
+
+    private static IdHighWaterMark shared;
+    // file locks belong to the whole JVM, so instances on the same file also share a monitor
+    private static final Map<String, Object> MONITORS = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final File lockFile;
+    private final Object monitor;
+    private final Properties marks = new Properties();
+
+    public IdHighWaterMark(File file) {
+        this.file = file.getAbsoluteFile();
+        this.lockFile = new File(this.file.getParentFile(), this.file.getName() + ".lock");
+        this.monitor = MONITORS.computeIfAbsent(this.file.getPath(), k -> new Object());
+        try {
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read ID high-water marks from " + file, e);
+        }
+    }
+
+    // Stored in the user's home directory so every run on this machine shares it
+    public static synchronized IdHighWaterMark shared() {
+        if (shared == null) shared = new IdHighWaterMark(new File(System.getProperty("user.home"), DEFAULT_FILE_NAME));
+        return shared;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // Next free value as of the last read or reservation; another process may have moved it on since
+    public long get(String key) {
+        synchronized (monitor) {
+            String v = marks.getProperty(key);
+            return v == null ? 0 : Long.parseLong(v);
+        }
+    }
+
+    // Reserves count values for key and returns the first one
+    public long reserve(String key, long count) {
+        if (count < 1) throw new IllegalArgumentException("Count must be at least 1");
+        synchronized (monitor) {
+            try {
+                File dir = file.getParentFile();
+                if (dir != null) dir.mkdirs();
+                try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    // released when the channel is closed
+                    channel.lock();
+                    // another process may have reserved since this one last looked
+                    load();
+                    long first = get(key);
+                    marks.setProperty(key, Long.toString(first + count));
+                    try {
+                        save();
+                    } catch (IOException e) {
+                        marks.setProperty(key, Long.toString(first));
+                        throw e;
+                    }
+                    return first;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot persist ID high-water mark to " + file, e);
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        marks.clear();
+        if (!file.isFile()) return;
+        try (InputStream in = new FileInputStream(file)) {
+            marks.load(in);
+        }
+    }
+
+    private void save() throws IOException {
+        Path dir = file.getParentFile().toPath();
+        Path tmp = Files.createTempFile(dir, file.getName(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                marks.store(out, "Next free value per ID sequence");
+            }
+            Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.robo.core;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Prefetched identifiers from one {@link IdGenerator}. A background thread keeps a
+ * bounded ring buffer topped up, and callers take from it with a single compare-and-set,
+ * so bulk generation does not wait on ID creation. If the ring is ever empty the caller
+ * generates inline rather than blocking.
+ *
+ * <p>The refill thread is the only writer of the tail; any number of threads may call
+ * {@link #next()}. Shared pools, one per generator spec, come from {@link #shared(String)}.</p>
+ */
+public final class IdPool implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final Map<String, IdPool> SHARED = new ConcurrentHashMap<>();
+
+    private final IdGenerator generator;
+    private final AtomicReferenceArray<String> ring;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder inlineCount = new LongAdder();
+    private final Thread refiller;
+    private volatile boolean closed;
+    private volatile RuntimeException refillFailure;
+
+    // capacity is rounded up to a power of two
+    public IdPool(String name, IdGenerator generator, int capacity) {
+        if (capacity < 2) throw new IllegalArgumentException("Capacity must be at least 2");
+        this.generator = Objects.requireNonNull(generator, "Generator is required");
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.refiller = new Thread(this::refillLoop, "id-pool-" + name);
+        refiller.setDaemon(true);
+        refiller.start();
+    }
+
+    /**
+     * Process-wide pool for a generator spec such as "uuid", "nric:F" or "pattern:ST-####"
+     * (see {@link IdGenerators}); pattern counters are persisted in {@link IdHighWaterMark#shared()}.
+     */
+    public static IdPool shared(String spec) {
+        return SHARED.computeIfAbsent(spec, s -> new IdPool(s, IdGenerators.fromSpec(s, IdHighWaterMark.shared()),
+                s.startsWith("pattern:") ? IdGenerators.PATTERN_POOL_CAPACITY : DEFAULT_CAPACITY));
+    }
+
+    public String next() {
+        while (true) {
+            long h = head.get();
+            if (h == tail.get()) break;
+            String id = ring.get((int) (h & mask));
+            if (head.compareAndSet(h, h + 1)) {
+                // wake the refiller once the ring is half empty
+                if (tail.get() - h - 1 < ring.length() / 2) LockSupport.unpark(refiller);
+                return id;
+            }
+        }
+        if (closed) throw new IllegalStateException("ID pool is closed");
+        LockSupport.unpark(refiller);
+        inlineCount.increment();
+        return generate();
+    }
+
+    // IDs ready in the ring
+    public int available() {
+        return (int) (tail.get() - head.get());
+    }
+
+    // Times a caller found the ring empty and generated an ID itself
+    public long getInlineCount() {
+        return inlineCount.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(refiller);
+    }
+
+    private String generate() {
+        RuntimeException failure = refillFailure;
+        if (failure != null) throw failure;
+        synchronized (generator) {
+            return generator.next();
+        }
+    }
+
+    private void refillLoop() {
+        while (!closed) {
+            long t = tail.get();
+            if (t - head.get() >= ring.length()) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                continue;
+            }
+            String id;
+            try {
+                id = generate();
+            } catch (RuntimeException e) {
+                // e.g. an exhausted pattern; callers see the same error when the ring runs dry
+                refillFailure = e;
+                return;
+            }
+            ring.set((int) (t & mask), id);
+            tail.set(t + 1);
+        }
+    }
+}
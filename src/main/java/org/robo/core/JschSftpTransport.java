@@ -0,0 +1,188 @@
+package org.robo.core;
+
+import com.jcraft.jsch.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.function.LongConsumer;
+
+/**
+ * JSch-backed transport. JSch waits for each write to be acknowledged before sending
+ * the next, so throughput is bounded by round-trip time on distant servers.
+ */
+public class JschSftpTransport implements SftpTransport {
+
+    @Override
+    public String getName() {
+        return "jsch";
+    }
+
+    @Override
+    public SftpConnection connect(SftpTarget target, int connectTimeoutMillis, int keepAliveMillis) throws JSchException {
+        JSch jsch = new JSch();
+        if (target.usesPrivateKey()) {
+            String passphrase = target.getPassphrase();
+            if (passphrase != null && !passphrase.isEmpty()) {
+                jsch.addIdentity(target.getPrivateKeyFile().getAbsolutePath(), passphrase);
+            } else {
+                jsch.addIdentity(target.getPrivateKeyFile().getAbsolutePath());
+            }
+        }
+
+        Session session = jsch.getSession(target.getUsername(), target.getHost(), target.getPort());
+        if (!target.usesPrivateKey()) session.setPassword(target.getPassword());
+        Properties config = new Properties();
+        config.put("StrictHostKeyChecking", "no");
+        session.setConfig(config);
+        if (keepAliveMillis > 0) {
+            session.setServerAliveInterval(keepAliveMillis);
+            session.setServerAliveCountMax(3);
+        }
+        session.connect(connectTimeoutMillis);
+
+        try {
+            Channel channel = session.openChannel("sftp");
+            channel.connect(connectTimeoutMillis);
+            return new Connection(session, (ChannelSftp) channel, connectTimeoutMillis);
+        } catch (JSchException | RuntimeException e) {
+            session.disconnect();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isConnectionFailure(Exception e) {
+        if (e instanceof SftpException) {
+            int id = ((SftpException) e).id;
+            return id == ChannelSftp.SSH_FX_NO_CONNECTION || id == ChannelSftp.SSH_FX_CONNECTION_LOST
+                    || e.getCause() instanceof IOException;
+        }
+        return true;
+    }
+
+    private static final class Connection implements SftpConnection {
+        private final Session session;
+        private final ChannelSftp sftp;
+        private final int connectTimeoutMillis;
+
+        private Connection(Session session, ChannelSftp sftp, int connectTimeoutMillis) {
+            this.session = session;
+            this.sftp = sftp;
+            this.connectTimeoutMillis = connectTimeoutMillis;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return session.isConnected() && sftp.isConnected() && !sftp.isClosed();
+        }
+
+        @Override
+        public void probe() throws SftpException {
+            sftp.realpath(".");
+        }
+
+        @Override
+        public long size(String path) throws SftpException {
+            try {
+                return sftp.stat(path).getSize();
+            } catch (SftpException e) {
+                if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) return -1;
+                throw e;
+            }
+        }
+
+        @Override
+        public void mkdir(String path) throws SftpException {
+            sftp.mkdir(path);
+        }
+
+        @Override
+        public void put(InputStream in, String path, boolean append, LongConsumer progress) throws SftpException {
+            // APPEND writes at the current remote size
+            sftp.put(in, path, progress == null ? null : new ProgressMonitor(progress),
+                    append ? ChannelSftp.APPEND : ChannelSftp.OVERWRITE);
+        }
+
+        /**
+         * JSch uses posix-rename@openssh.com when the server offers it, which replaces the
+         * target atomically. Plain SFTP rename refuses to overwrite, so without the
+         * extension an existing target is removed first.
+         */
+        @Override
+        public void rename(String from, String to) throws SftpException {
+            try {
+                sftp.rename(from, to);
+            } catch (SftpException e) {
+                if (sftp.getExtension("posix-rename@openssh.com") != null || size(to) < 0) throw e;
+                sftp.rm(to);
+                sftp.rename(from, to);
+            }
+        }
+
+        @Override
+        public void remove(String path) throws SftpException {
+            sftp.rm(path);
+        }
+
+        @Override
+        public String exec(String command) throws JSchException, IOException, InterruptedException {
+            ChannelExec exec = (ChannelExec) session.openChannel("exec");
+            try {
+                exec.setCommand(command);
+                exec.setInputStream(null);
+                InputStream out = exec.getInputStream();
+                exec.connect(connectTimeoutMillis);
+                String output = new String(out.readAllBytes(), StandardCharsets.UTF_8);
+                long deadline = System.currentTimeMillis() + 5_000;
+                while (!exec.isClosed() && System.currentTimeMillis() < deadline) Thread.sleep(10);
+                return exec.getExitStatus() == 0 ? output : null;
+            } finally {
+                exec.disconnect();
+            }
+        }
+
+        // JSch has no API for sending extended requests such as check-file
+        @Override
+        public String checkFileHash(String path, String algorithm) {
+            return null;
+        }
+
+        @Override
+        public boolean isNoSuchFile(Exception e) {
+            return e instanceof SftpException && ((SftpException) e).id == ChannelSftp.SSH_FX_NO_SUCH_FILE;
+        }
+
+        @Override
+        public void close() {
+            try {
+                sftp.exit();
+            } finally {
+                session.disconnect();
+            }
+        }
+    }
+
+    private static final class ProgressMonitor implements SftpProgressMonitor {
+        private final LongConsumer progress;
+
+        private ProgressMonitor(LongConsumer progress) {
+            this.progress = progress;
+        }
+
+        @Override
+        public void init(int op, String src, String dest, long max) {
+        }
+
+        @Override
+        public boolean count(long count) {
+            progress.accept(count);
+            return true;
+        }
+
+        @Override
+        public void end() {
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.robo.core;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generates Singapore NRIC/FIN numbers with a valid check letter, offline.
+ *
+ * <p>An ID is a prefix letter, seven digits and a check letter. The digits are weighted
+ * 2,7,6,5,4,3,2 and summed, T and G add 4 and M adds 3, and the sum modulo 11 picks the
+ * letter from the prefix's table. A generator never returns the same ID twice, and two
+ * generators with the same seed return the same sequence. Instances are not thread-safe.</p>
+ */
+public final class NricGenerator {
+
+    private static final int[] WEIGHTS = {2, 7, 6, 5, 4, 3, 2};
+    private static final int NUMBERS_PER_PREFIX = 10_000_000;
+
+    public enum Prefix {
+        // citizens and PRs born before 2000 / from 2000
+        S(0, "JZIHGFEDCBA"),
+        T(4, "JZIHGFEDCBA"),
+        // foreigners issued before 2000 / from 2000 to 2021 / from 2022
+        F(0, "XWUTRQPNMLK"),
+        G(4, "XWUTRQPNMLK"),
+        M(3, "XWUTRQPNJLK");
+
+        private final int offset;
+        private final String checkLetters;
+
+        Prefix(int offset, String checkLetters) {
+            this.offset = offset;
+            this.checkLetters = checkLetters;
+        }
+
+        public static Prefix of(char c) {
+            switch (Character.toUpperCase(c)) {
+                case 'S': return S;
+                case 'T': return T;
+                case 'F': return F;
+                case 'G': return G;
+                case 'M': return M;
+                default: throw new IllegalArgumentException("Unknown NRIC/FIN prefix: " + c);
+            }
+        }
+    }
+
+    private final SplittableRandom random;
+    private final Map<Prefix, BitSet> issued = new EnumMap<>(Prefix.class);
+    private final Map<Prefix, Integer> issuedCount = new EnumMap<>(Prefix.class);
+
+    public NricGenerator() {
+        this(new SecureRandom().nextLong());
+    }
+
+    public NricGenerator(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    public String next(Prefix prefix) {
+        int count = issuedCount.getOrDefault(prefix, 0);
+        if (count >= NUMBERS_PER_PREFIX) throw new IllegalStateException("All " + prefix + " numbers have been issued");
+        // one bit per seven-digit number, allocated on first use (1.25 MB per prefix)
+        BitSet used = issued.computeIfAbsent(prefix, p -> new BitSet(NUMBERS_PER_PREFIX));
+        int number = random.nextInt(NUMBERS_PER_PREFIX);
+        if (used.get(number)) {
+            // probe forward to the next free number, so a nearly full prefix still terminates
+            number = used.nextClearBit(number);
+            if (number >= NUMBERS_PER_PREFIX) number = used.nextClearBit(0);
+        }
+        used.set(number);
+        issuedCount.put(prefix, count + 1);
+        return format(prefix, number);
+    }
+
+    // count distinct IDs in generation order
+    public List<String> next(Prefix prefix, int count) {
+        if (count < 0) throw new IllegalArgumentException("Count cannot be negative");
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) ids.add(next(prefix));
+        return ids;
+    }
+
+    public static char checkLetter(Prefix prefix, int number) {
+        if (number < 0 || number >= NUMBERS_PER_PREFIX) throw new IllegalArgumentException("Number must have 7 digits");
+        int sum = prefix.offset;
+        for (int i = WEIGHTS.length - 1; i >= 0; i--) {
+            sum += (number % 10) * WEIGHTS[i];
+            number /= 10;
+        }
+        return prefix.checkLetters.charAt(sum % 11);
+    }
+
+    public static boolean isValid(String id) {
+        if (id == null || id.length() != 9) return false;
+        Prefix prefix;
+        try {
+            prefix = Prefix.of(id.charAt(0));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        int number = 0;
+        for (int i = 1; i <= 7; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') return false;
+            number = number * 10 + (c - '0');
+        }
+        return Character.toUpperCase(id.charAt(8)) == checkLetter(prefix, number);
+    }
+
+    private static String format(Prefix prefix, int number) {
+        char[] id = new char[9];
+        id[0] = prefix.name().charAt(0);
+        int n = number;
+        for (int i = 7; i >= 1; i--) {
+            id[i] = (char) ('0' + n % 10);
+            n /= 10;
+        }
+        id[8] = checkLetter(prefix, number);
+        return new String(id);
+    }
+}
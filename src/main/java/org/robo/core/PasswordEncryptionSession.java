@@ -0,0 +1,94 @@
+package org.robo.core;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Encrypts a batch of files under one passphrase. The passphrase is stretched once per
+ * session (or taken from {@link PasswordKeyCache}) into a master key, and each file gets
+ * its own AES-256 key from HKDF-SHA256 over the master key and a random per-file info
+ * string. Everything needed to re-derive the key is in the file header:
+ *
+ * <pre>
+ * magic "RPK1" | PBKDF2 iterations u32 | salt length u8 | salt
+ * | info length u16 | info | IV (16 bytes) | AES-CBC/PKCS5 ciphertext
+ * </pre>
+ *
+ * Sessions are thread-safe; close them to zero the master key.
+ */
+public class PasswordEncryptionSession implements AutoCloseable {
+
+    static final byte[] MAGIC = {'R', 'P', 'K', '1'};
+    static final String INFO_LABEL = "robo-file-key-v1:";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final PasswordKeyCache.MasterKey masterKey;
+    private final SecureRandom random = new SecureRandom();
+    private volatile boolean closed;
+
+    private PasswordEncryptionSession(PasswordKeyCache.MasterKey masterKey) {
+        this.masterKey = masterKey;
+    }
+
+    public static PasswordEncryptionSession open(String passphrase) throws Exception {
+        return open(passphrase, PasswordKeyCache.shared());
+    }
+
+    public static PasswordEncryptionSession open(String passphrase, PasswordKeyCache cache) throws Exception {
+        return new PasswordEncryptionSession(cache.forEncryption(passphrase, CryptoUtil.PBKDF2_ITERATIONS));
+    }
+
+    public void encryptFile(File inputFile, File outFile) throws Exception {
+        if (closed) throw new IllegalStateException("Encryption session is closed");
+        byte[] fileId = new byte[16];
+        random.nextBytes(fileId);
+        byte[] label = INFO_LABEL.getBytes(StandardCharsets.US_ASCII);
+        byte[] info = Arrays.copyOf(label, label.length + fileId.length);
+        System.arraycopy(fileId, 0, info, label.length, fileId.length);
+        byte[] iv = new byte[16];
+        random.nextBytes(iv);
+
+        byte[] salt = masterKey.getSalt();
+        byte[] fileKey = CryptoUtil.hkdfSha256(masterKey.key(), salt, info, 32);
+        SecretKeySpec keySpec = new SecretKeySpec(fileKey, "AES");
+        Arrays.fill(fileKey, (byte) 0);
+
+        try (CipherPool.Lease lease = CipherPool.shared().borrow("AES/CBC/PKCS5Padding", Cipher.ENCRYPT_MODE, keySpec,
+                new IvParameterSpec(iv)).scrubOnClose();
+             FileInputStream fis = new FileInputStream(inputFile);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outFile), BUFFER_SIZE))) {
+            out.write(MAGIC);
+            out.writeInt(masterKey.getIterations());
+            out.writeByte(salt.length);
+            out.write(salt);
+            out.writeShort(info.length);
+            out.write(info);
+            out.write(iv);
+
+            Cipher cipher = lease.cipher();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            byte[] encrypted = new byte[cipher.getOutputSize(BUFFER_SIZE)];
+            int n;
+            while ((n = fis.read(buffer)) != -1) {
+                out.write(encrypted, 0, cipher.update(buffer, 0, n, encrypted));
+            }
+            out.write(encrypted, 0, cipher.doFinal(encrypted, 0));
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        masterKey.close();
+    }
+}
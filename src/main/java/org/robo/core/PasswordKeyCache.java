@@ -0,0 +1,164 @@
+package org.robo.core;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of PBKDF2-stretched master keys, so a batch of files encrypted or
+ * decrypted with one passphrase pays for the 100,000 iterations once. Keys are copied
+ * in and out and zeroed when evicted or cleared. Passphrases are never stored; entries
+ * are found by an HMAC of the passphrase under a random per-process key.
+ */
+public final class PasswordKeyCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 16;
+    // How long an encryption master key (and its salt) may be reused by new sessions
+    public static final long DEFAULT_REUSE_MILLIS = 10 * 60_000;
+
+    private static PasswordKeyCache shared;
+
+    private final int maxEntries;
+    private final long reuseMillis;
+    private final byte[] fingerprintKey = new byte[32];
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    public PasswordKeyCache(int maxEntries, long reuseMillis) {
+        if (maxEntries < 1) throw new IllegalArgumentException("Cache size must be at least 1");
+        this.maxEntries = maxEntries;
+        this.reuseMillis = reuseMillis;
+        new SecureRandom().nextBytes(fingerprintKey);
+    }
+
+    public static synchronized PasswordKeyCache shared() {
+        if (shared == null) {
+            shared = new PasswordKeyCache(DEFAULT_MAX_ENTRIES, DEFAULT_REUSE_MILLIS);
+            PasswordKeyCache cache = shared;
+            Runtime.getRuntime().addShutdownHook(new Thread(cache::clear, "password-key-cache-clear"));
+        }
+        return shared;
+    }
+
+    /**
+     * Master key for encrypting: the most recent key for this passphrase if it is still
+     * within the reuse window, otherwise a fresh salt and a newly stretched key.
+     */
+    public MasterKey forEncryption(String passphrase, int iterations) throws Exception {
+        String fingerprint = fingerprint(passphrase);
+        long cutoff = System.currentTimeMillis() - reuseMillis;
+        synchronized (this) {
+            Entry newest = null;
+            for (Entry e : entries.values()) {
+                if (e.fingerprint.equals(fingerprint) && e.iterations == iterations && e.created >= cutoff
+                        && (newest == null || e.created > newest.created)) newest = e;
+            }
+            if (newest != null) return new MasterKey(newest.salt.clone(), iterations, newest.key.clone());
+        }
+        byte[] salt = new byte[16];
+        new SecureRandom().nextBytes(salt);
+        byte[] key = CryptoUtil.pbkdf2(passphrase, salt, iterations);
+        put(fingerprint, salt, iterations, key);
+        return new MasterKey(salt, iterations, key);
+    }
+
+    // Master key for a known salt, e.g. read from a file header; stretched only on a miss
+    public MasterKey forSalt(String passphrase, byte[] salt, int iterations) throws Exception {
+        String fingerprint = fingerprint(passphrase);
+        String id = id(fingerprint, salt, iterations);
+        synchronized (this) {
+            Entry e = entries.get(id);
+            if (e != null) return new MasterKey(salt.clone(), iterations, e.key.clone());
+        }
+        byte[] key = CryptoUtil.pbkdf2(passphrase, salt, iterations);
+        put(fingerprint, salt.clone(), iterations, key);
+        return new MasterKey(salt.clone(), iterations, key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Zeroes and drops every cached key
+    public synchronized void clear() {
+        for (Entry e : entries.values()) Arrays.fill(e.key, (byte) 0);
+        entries.clear();
+    }
+
+    private synchronized void put(String fingerprint, byte[] salt, int iterations, byte[] key) {
+        Entry previous = entries.put(id(fingerprint, salt, iterations),
+                new Entry(fingerprint, salt, iterations, key.clone(), System.currentTimeMillis()));
+        if (previous != null) Arrays.fill(previous.key, (byte) 0);
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            Arrays.fill(it.next().getValue().key, (byte) 0);
+            it.remove();
+        }
+    }
+
+    private String fingerprint(String passphrase) throws Exception {
+        if (passphrase == null || passphrase.isEmpty()) throw new IllegalArgumentException("Passphrase is required");
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(fingerprintKey, "HmacSHA256"));
+        return encode(mac.doFinal(passphrase.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String id(String fingerprint, byte[] salt, int iterations) {
+        return fingerprint + ':' + encode(salt) + ':' + iterations;
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final byte[] salt;
+        private final int iterations;
+        private final byte[] key;
+        private final long created;
+
+        private Entry(String fingerprint, byte[] salt, int iterations, byte[] key, long created) {
+            this.fingerprint = fingerprint;
+            this.salt = salt;
+            this.iterations = iterations;
+            this.key = key;
+            this.created = created;
+        }
+    }
+
+    /** A caller's own copy of a master key; destroy it when done. */
+    public static final class MasterKey implements AutoCloseable {
+        private final byte[] salt;
+        private final int iterations;
+        private final byte[] key;
+
+        private MasterKey(byte[] salt, int iterations, byte[] key) {
+            this.salt = salt;
+            this.iterations = iterations;
+            this.key = key;
+        }
+
+        public byte[] getSalt() {
+            return salt.clone();
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        byte[] key() {
+            return key;
+        }
+
+        @Override
+        public void close() {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+}
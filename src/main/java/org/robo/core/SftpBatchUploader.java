@@ -0,0 +1,247 @@
+package org.robo.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploads many local files to one SFTP target over a bounded number of concurrent
+ * sessions. Each worker borrows its own pooled session, so N workers keep up to N
+ * SSH connections busy in parallel.
+ */
+public class SftpBatchUploader implements AutoCloseable {
+
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    private final int concurrency;
+    private final SftpSessionPool pool;
+    private final boolean ownsPool;
+    private final ExecutorService executor;
+
+    public SftpBatchUploader() {
+        this(DEFAULT_CONCURRENCY);
+    }
+
+    // Uses a dedicated pool sized to the concurrency limit
+    public SftpBatchUploader(int concurrency) {
+        this(concurrency, new SftpSessionPool(Math.max(1, concurrency), SftpSessionPool.DEFAULT_IDLE_TIMEOUT_MS,
+                SftpSessionPool.DEFAULT_KEEP_ALIVE_MS, SftpSessionPool.DEFAULT_CONNECT_TIMEOUT_MS,
+                SftpSessionPool.DEFAULT_BORROW_TIMEOUT_MS), true);
+    }
+
+    public SftpBatchUploader(int concurrency, SftpSessionPool pool) {
+        this(concurrency, pool, false);
+    }
+
+    private SftpBatchUploader(int concurrency, SftpSessionPool pool, boolean ownsPool) {
+        if (concurrency < 1) throw new IllegalArgumentException("Concurrency must be at least 1");
+        this.concurrency = concurrency;
+        this.pool = Objects.requireNonNull(pool, "Session pool is required");
+        this.ownsPool = ownsPool;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread t = new Thread(r, "sftp-upload-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    // Uploads every regular file in the directory matching the glob, e.g. "SFTP_*.{txt,enc}"
+    public BatchUpload uploadDirectory(SftpTarget target, File directory, String glob, String remoteDir) throws IOException {
+        return uploadDirectory(target, directory, glob, remoteDir, SftpUploadOptions.defaults());
+    }
+
+    public BatchUpload uploadDirectory(SftpTarget target, File directory, String glob, String remoteDir,
+                                       SftpUploadOptions options) throws IOException {
+        Objects.requireNonNull(directory, "Directory is required");
+        List<File> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toPath(), glob == null ? "*" : glob)) {
+            for (Path p : stream) {
+                if (Files.isRegularFile(p) && !p.getFileName().toString().endsWith(UploadCheckpoint.SUFFIX)) files.add(p.toFile());
+            }
+        }
+        files.sort(Comparator.comparing(File::getName));
+        return uploadAll(target, files, remoteDir, options);
+    }
+
+    public BatchUpload uploadAll(SftpTarget target, List<File> files, String remoteDir) {
+        return uploadAll(target, files, remoteDir, SftpUploadOptions.defaults());
+    }
+
+    public BatchUpload uploadAll(SftpTarget target, List<File> files, String remoteDir, SftpUploadOptions options) {
+        Objects.requireNonNull(target, "Target is required");
+        Objects.requireNonNull(files, "Files are required");
+        long started = System.nanoTime();
+
+        // Submit largest files first so one big file does not end up running alone at the tail
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) order.add(i);
+        order.sort(Comparator.comparingLong((Integer i) -> files.get(i).length()).reversed());
+
+        List<CompletableFuture<FileResult>> futures = new ArrayList<>(Collections.nCopies(files.size(), null));
+        for (int i : order) {
+            File file = files.get(i);
+            futures.set(i, CompletableFuture.supplyAsync(() -> uploadOne(target, file, remoteDir, options), executor));
+        }
+
+        CompletableFuture<BatchReport> completion = CompletableFuture
+                .allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> {
+                    List<FileResult> results = new ArrayList<>(futures.size());
+                    for (CompletableFuture<FileResult> f : futures) results.add(f.join());
+                    return new BatchReport(results, System.nanoTime() - started);
+                });
+        return new BatchUpload(futures, completion);
+    }
+
+    private FileResult uploadOne(SftpTarget target, File file, String remoteDir, SftpUploadOptions options) {
+        long t0 = System.nanoTime();
+        try {
+            String digest = SftpUtil.upload(pool, target, file, remoteDir, file.getName(), options);
+            return new FileResult(file, file.length(), System.nanoTime() - t0, digest, null);
+        } catch (Exception e) {
+            return new FileResult(file, 0, System.nanoTime() - t0, null, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        if (ownsPool) pool.close();
+    }
+
+    public static final class BatchUpload {
+        private final List<CompletableFuture<FileResult>> futures;
+        private final CompletableFuture<BatchReport> completion;
+
+        private BatchUpload(List<CompletableFuture<FileResult>> futures, CompletableFuture<BatchReport> completion) {
+            this.futures = Collections.unmodifiableList(futures);
+            this.completion = completion;
+        }
+
+        // One future per input file, in input order
+        public List<CompletableFuture<FileResult>> getFutures() {
+            return futures;
+        }
+
+        public CompletableFuture<BatchReport> getCompletion() {
+            return completion;
+        }
+
+        public BatchReport await() {
+            return completion.join();
+        }
+    }
+
+    public static final class FileResult {
+        private final File file;
+        private final long bytes;
+        private final long elapsedNanos;
+        private final String digest;
+        private final Exception error;
+
+        public FileResult(File file, long bytes, long elapsedNanos, String digest, Exception error) {
+            this.file = file;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+            this.digest = digest;
+            this.error = error;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        // Hex digest of the uploaded bytes when verification was on
+        public String getDigest() {
+            return digest;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    public static final class BatchReport {
+        private final List<FileResult> results;
+        private final long elapsedNanos;
+
+        public BatchReport(List<FileResult> results, long elapsedNanos) {
+            this.results = Collections.unmodifiableList(new ArrayList<>(results));
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<FileResult> getResults() {
+            return results;
+        }
+
+        public int getFileCount() {
+            return results.size();
+        }
+
+        public int getSucceeded() {
+            int n = 0;
+            for (FileResult r : results) if (r.isSuccess()) n++;
+            return n;
+        }
+
+        public List<FileResult> getFailures() {
+            List<FileResult> failures = new ArrayList<>();
+            for (FileResult r : results) if (!r.isSuccess()) failures.add(r);
+            return failures;
+        }
+
+        public long getTotalBytes() {
+            long total = 0;
+            for (FileResult r : results) total += r.getBytes();
+            return total;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getBytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : getTotalBytes() * 1_000_000_000d / elapsedNanos;
+        }
+
+        public double getFilesPerSecond() {
+            return elapsedNanos == 0 ? 0 : results.size() * 1_000_000_000d / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d/%d files uploaded, %d bytes in %.2f s (%.2f MB/s, %.1f files/s), %d failed",
+                    getSucceeded(), getFileCount(), getTotalBytes(), elapsedNanos / 1e9,
+                    getBytesPerSecond() / (1024 * 1024), getFilesPerSecond(), results.size() - getSucceeded());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.robo.core;
+
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * One connected SFTP session, as used by {@link SftpUtil}. Implementations are not
+ * thread-safe; the pool hands each connection to one caller at a time.
+ */
+public interface SftpConnection extends AutoCloseable {
+
+    boolean isOpen();
+
+    // Cheap round trip to confirm the server still answers
+    void probe() throws Exception;
+
+    // Remote file size, or -1 if it does not exist
+    long size(String path) throws Exception;
+
+    void mkdir(String path) throws Exception;
+
+    /**
+     * Streams {@code in} to the remote path, truncating it, or appending at the current
+     * remote size when {@code append} is set. {@code progress} receives byte counts as they are sent.
+     */
+    void put(InputStream in, String path, boolean append, LongConsumer progress) throws Exception;
+
+    // Renames, replacing an existing target; atomically where the server supports it
+    void rename(String from, String to) throws Exception;
+
+    void remove(String path) throws Exception;
+
+    // Runs a command over an exec channel; stdout on exit status 0, otherwise null
+    String exec(String command) throws Exception;
+
+    // Server-side digest via the check-file extension, or null when unsupported
+    String checkFileHash(String path, String algorithm) throws Exception;
+
+    boolean isNoSuchFile(Exception e);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,15 @@
+package org.robo.core;
+
+import java.io.IOException;
+
+/**
+ * Remote file does not match what was sent. Not retried by {@link SftpUtil}.
+ */
+public class SftpIntegrityException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SftpIntegrityException(String message) {
+        super(message);
+    }
+}
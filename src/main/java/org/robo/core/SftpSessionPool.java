@@ -0,0 +1,289 @@
+package org.robo.core;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keyed pool of connected SFTP sessions, opened through an {@link SftpTransport}.
+ * Sessions are keyed by {@link SftpTarget#poolKey()} so repeated uploads to the same
+ * server skip the SSH handshake. Idle sessions are evicted after a timeout, kept alive
+ * with server-alive probes while pooled, and health-checked before being handed out.
+ */
+public class SftpSessionPool implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_TOTAL = 8;
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 60_000;
+    public static final int DEFAULT_KEEP_ALIVE_MS = 15_000;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 10_000;
+    public static final long DEFAULT_BORROW_TIMEOUT_MS = 120_000;
+    // Sessions idle for longer than this get a round trip before reuse
+    private static final long VALIDATE_AFTER_MS = 5_000;
+
+    private static SftpSessionPool shared;
+
+    private final SftpTransport transport;
+    private final int maxTotal;
+    private final long idleTimeoutMillis;
+    private final int keepAliveMillis;
+    private final int connectTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final Map<String, Deque<PooledSession>> idle = new HashMap<>();
+    private final ScheduledExecutorService evictor;
+    private int live;
+    private boolean closed;
+
+    public SftpSessionPool() {
+        this(DEFAULT_MAX_TOTAL, DEFAULT_IDLE_TIMEOUT_MS, DEFAULT_KEEP_ALIVE_MS, DEFAULT_CONNECT_TIMEOUT_MS, DEFAULT_BORROW_TIMEOUT_MS);
+    }
+
+    // Uses the transport selected by the robo.sftp.transport system property
+    public SftpSessionPool(int maxTotal, long idleTimeoutMillis, int keepAliveMillis,
+                           int connectTimeoutMillis, long borrowTimeoutMillis) {
+        this(SftpTransport.defaultTransport(), maxTotal, idleTimeoutMillis, keepAliveMillis,
+                connectTimeoutMillis, borrowTimeoutMillis);
+    }
+
+    public SftpSessionPool(SftpTransport transport, int maxTotal, long idleTimeoutMillis, int keepAliveMillis,
+                           int connectTimeoutMillis, long borrowTimeoutMillis) {
+        if (maxTotal < 1) throw new IllegalArgumentException("Pool size must be at least 1");
+        this.transport = Objects.requireNonNull(transport, "Transport is required");
+        this.maxTotal = maxTotal;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.keepAliveMillis = keepAliveMillis;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sftp-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Process-wide pool used by SftpUtil
+    public static synchronized SftpSessionPool shared() {
+        if (shared == null) {
+            shared = new SftpSessionPool();
+            SftpSessionPool pool = shared;
+            Runtime.getRuntime().addShutdownHook(new Thread(pool::close, "sftp-pool-shutdown"));
+        }
+        return shared;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public SftpTransport getTransport() {
+        return transport;
+    }
+
+    public Lease borrow(SftpTarget target) throws Exception {
+        String key = target.poolKey();
+        long deadline = System.currentTimeMillis() + borrowTimeoutMillis;
+        while (true) {
+            PooledSession candidate = null;
+            PooledSession evicted = null;
+            synchronized (this) {
+                if (closed) throw new IllegalStateException("SFTP session pool is closed");
+                Deque<PooledSession> queue = idle.get(key);
+                if (queue != null && !queue.isEmpty()) {
+                    candidate = queue.pollFirst();
+                } else if (live < maxTotal) {
+                    live++;
+                } else if ((evicted = evictOldestIdle()) == null) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new IOException("Timed out waiting for a pooled SFTP session to " + target);
+                    }
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted waiting for a pooled SFTP session", e);
+                    }
+                    continue;
+                }
+            }
+            // a hung server must not hold up other borrowers, so this happens outside the lock
+            if (evicted != null) evicted.disconnect();
+
+            if (candidate != null) {
+                if (isHealthy(candidate, true)) return new Lease(candidate);
+                destroy(candidate);
+                continue;
+            }
+
+            try {
+                return new Lease(new PooledSession(key, transport.connect(target, connectTimeoutMillis, keepAliveMillis)));
+            } catch (Exception e) {
+                synchronized (this) {
+                    live--;
+                    notifyAll();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void release(PooledSession pooled, boolean reusable) {
+        boolean keep;
+        synchronized (this) {
+            keep = reusable && !closed && isHealthy(pooled, false);
+            if (keep) {
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.computeIfAbsent(pooled.key, k -> new ArrayDeque<>()).offerFirst(pooled);
+                notifyAll();
+            }
+        }
+        if (!keep) destroy(pooled);
+    }
+
+    private void destroy(PooledSession pooled) {
+        pooled.disconnect();
+        synchronized (this) {
+            live--;
+            notifyAll();
+        }
+    }
+
+    private boolean isHealthy(PooledSession pooled, boolean probe) {
+        if (!pooled.connection.isOpen()) return false;
+        if (!probe || System.currentTimeMillis() - pooled.lastUsed < VALIDATE_AFTER_MS) return true;
+        try {
+            pooled.connection.probe();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Takes the least recently used idle session of any key out of the pool; its slot in
+     * live passes to the caller, who disconnects it after releasing the lock. Caller holds the lock.
+     */
+    private PooledSession evictOldestIdle() {
+        PooledSession oldest = null;
+        for (Deque<PooledSession> queue : idle.values()) {
+            PooledSession last = queue.peekLast();
+            if (last != null && (oldest == null || last.lastUsed < oldest.lastUsed)) oldest = last;
+        }
+        if (oldest == null) return null;
+        idle.get(oldest.key).removeLast();
+        return oldest;
+    }
+
+    private void evictIdle() {
+        List<PooledSession> expired = new ArrayList<>();
+        synchronized (this) {
+            long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+            for (Iterator<Deque<PooledSession>> it = idle.values().iterator(); it.hasNext(); ) {
+                Deque<PooledSession> queue = it.next();
+                queue.removeIf(p -> {
+                    if (p.lastUsed < cutoff || !p.connection.isOpen()) {
+                        expired.add(p);
+                        return true;
+                    }
+                    return false;
+                });
+                if (queue.isEmpty()) it.remove();
+            }
+        }
+        for (PooledSession p : expired) destroy(p);
+    }
+
+    public synchronized int getIdleCount() {
+        int count = 0;
+        for (Deque<PooledSession> queue : idle.values()) count += queue.size();
+        return count;
+    }
+
+    public synchronized int getLiveCount() {
+        return live;
+    }
+
+    @Override
+    public void close() {
+        List<PooledSession> toClose = new ArrayList<>();
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            for (Deque<PooledSession> queue : idle.values()) toClose.addAll(queue);
+            idle.clear();
+            notifyAll();
+        }
+        evictor.shutdownNow();
+        for (PooledSession p : toClose) destroy(p);
+    }
+
+    // Connection-level failures make the session unusable; plain SFTP errors (missing file, permissions) do not.
+    public boolean isConnectionFailure(Exception e) {
+        if (e instanceof SftpIntegrityException || e instanceof FileNotFoundException) return false;
+        return transport.isConnectionFailure(e);
+    }
+
+    private static final class PooledSession {
+        private final String key;
+        private final SftpConnection connection;
+        // Remote directories known to exist; only touched by the thread holding the lease
+        private final Set<String> knownDirectories = new HashSet<>();
+        private long lastUsed = System.currentTimeMillis();
+
+        private PooledSession(String key, SftpConnection connection) {
+            this.key = key;
+            this.connection = connection;
+        }
+
+        private void disconnect() {
+            connection.close();
+        }
+    }
+
+    /**
+     * A borrowed session. Closing the lease returns it to the pool unless it was invalidated.
+     */
+    public final class Lease implements AutoCloseable {
+        private final PooledSession pooled;
+        private boolean invalid;
+        private boolean released;
+
+        private Lease(PooledSession pooled) {
+            this.pooled = pooled;
+        }
+
+        public SftpConnection connection() {
+            return pooled.connection;
+        }
+
+        // Per-session cache of remote directories already created or seen
+        public Set<String> knownDirectories() {
+            return pooled.knownDirectories;
+        }
+
+        // Mark the session as broken so it is disconnected instead of pooled
+        public void invalidate() {
+            invalid = true;
+        }
+
+        @Override
+        public void close() {
+            if (released) return;
+            released = true;
+            release(pooled, !invalid);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.robo.core;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+/**
+ * Connection details for an SFTP server: host, port, user and either a password
+ * or a private key. Used as the key for pooled sessions, so two targets with the
+ * same host, port, user and credentials share connections.
+ */
+public final class SftpTarget {
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final File privateKeyFile;
+    private final String passphrase;
+    private final String poolKey;
+
+    private SftpTarget(String host, int port, String username, String password, File privateKeyFile, String passphrase) {
+        this.host = Objects.requireNonNull(host, "Host is required");
+        this.port = port;
+        this.username = Objects.requireNonNull(username, "Username is required");
+        this.password = password;
+        this.privateKeyFile = privateKeyFile;
+        this.passphrase = passphrase;
+        this.poolKey = username + "@" + host + ":" + port + "#" + identity();
+    }
+
+    public static SftpTarget withPassword(String host, int port, String username, String password) {
+        Objects.requireNonNull(password, "Password is required");
+        return new SftpTarget(host, port, username, password, null, null);
+    }
+
+    public static SftpTarget withPrivateKey(String host, int port, String username, File privateKeyFile, String passphrase) {
+        Objects.requireNonNull(privateKeyFile, "Private key file is required");
+        return new SftpTarget(host, port, username, null, privateKeyFile, passphrase);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public File getPrivateKeyFile() {
+        return privateKeyFile;
+    }
+
+    public String getPassphrase() {
+        return passphrase;
+    }
+
+    public boolean usesPrivateKey() {
+        return privateKeyFile != null;
+    }
+
+    // Stable key per host, port, user and auth identity. Passwords and passphrases are hashed so they never end up in logs.
+    public String poolKey() {
+        return poolKey;
+    }
+
+    private String identity() {
+        // the passphrase is part of it, so a wrong one gets its own session and fails there
+        if (privateKeyFile != null) {
+            return "key:" + privateKeyFile.getAbsolutePath() + ":" + (passphrase == null ? "-" : sha256Prefix(passphrase));
+        }
+        return "pwd:" + sha256Prefix(password);
+    }
+
+    private static String sha256Prefix(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 8; i++) sb.append(String.format("%02x", digest[i]));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SftpTarget)) return false;
+        return poolKey.equals(((SftpTarget) o).poolKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return poolKey.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return username + "@" + host + ":" + port;
+    }
+}
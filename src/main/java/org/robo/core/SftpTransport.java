@@ -0,0 +1,37 @@
+package org.robo.core;
+
+import java.util.Locale;
+
+/**
+ * SFTP client library behind {@link SftpSessionPool}. JSch is the default; sshj
+ * pipelines writes and is faster on high-latency links. The default can be switched
+ * with {@code -Drobo.sftp.transport=sshj}.
+ */
+public interface SftpTransport {
+
+    String TRANSPORT_PROPERTY = "robo.sftp.transport";
+
+    String getName();
+
+    SftpConnection connect(SftpTarget target, int connectTimeoutMillis, int keepAliveMillis) throws Exception;
+
+    // True when the error means the connection is unusable and the upload may be retried on a new one
+    boolean isConnectionFailure(Exception e);
+
+    static SftpTransport forName(String name) {
+        String key = name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+        switch (key) {
+            case "":
+            case "jsch":
+                return new JschSftpTransport();
+            case "sshj":
+                return new SshjSftpTransport();
+            default:
+                throw new IllegalArgumentException("Unknown SFTP transport: " + name + " (expected jsch or sshj)");
+        }
+    }
+
+    static SftpTransport defaultTransport() {
+        return forName(System.getProperty(TRANSPORT_PROPERTY, "jsch"));
+    }
+}
@@ -0,0 +1,142 @@
+package org.robo.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-upload settings for {@link SftpUtil}. The defaults match a plain single-attempt put.
+ */
+public class SftpUploadOptions {
+
+    public static final long DEFAULT_RETRY_BACKOFF_MS = 2_000;
+    public static final String DEFAULT_TEMP_SUFFIX = ".part";
+    // %s is replaced with the shell-quoted remote path; output must start with the hex digest
+    public static final String DEFAULT_REMOTE_SHA256_COMMAND = "sha256sum %s";
+
+    private boolean resumable;
+    private boolean atomic;
+    private String tempSuffix = DEFAULT_TEMP_SUFFIX;
+    private UploadDigest.Algorithm verifyAlgorithm;
+    private String remoteHashCommand;
+    private int maxAttempts = 1;
+    private long retryBackoffMillis = DEFAULT_RETRY_BACKOFF_MS;
+    private List<TokenBucket> rateLimiters = new ArrayList<>();
+    private List<TransferMeter> transferMeters = new ArrayList<>();
+
+    public static SftpUploadOptions defaults() {
+        return new SftpUploadOptions();
+    }
+
+    // Resumable upload with a local checkpoint, retried a few times on connection failures
+    public static SftpUploadOptions resumableWithRetries(int maxAttempts) {
+        SftpUploadOptions options = new SftpUploadOptions();
+        options.setResumable(true);
+        options.setMaxAttempts(maxAttempts);
+        return options;
+    }
+
+    public SftpUploadOptions copy() {
+        SftpUploadOptions copy = new SftpUploadOptions();
+        copy.resumable = resumable;
+        copy.atomic = atomic;
+        copy.tempSuffix = tempSuffix;
+        copy.verifyAlgorithm = verifyAlgorithm;
+        copy.remoteHashCommand = remoteHashCommand;
+        copy.maxAttempts = maxAttempts;
+        copy.retryBackoffMillis = retryBackoffMillis;
+        copy.rateLimiters = new ArrayList<>(rateLimiters);
+        copy.transferMeters = new ArrayList<>(transferMeters);
+        return copy;
+    }
+
+    public boolean isResumable() {
+        return resumable;
+    }
+
+    public void setResumable(boolean resumable) {
+        this.resumable = resumable;
+    }
+
+    public boolean isAtomic() {
+        return atomic;
+    }
+
+    // Write to a hidden temporary name and rename into place once complete
+    public void setAtomic(boolean atomic) {
+        this.atomic = atomic;
+    }
+
+    public String getTempSuffix() {
+        return tempSuffix;
+    }
+
+    public void setTempSuffix(String tempSuffix) {
+        if (tempSuffix == null || tempSuffix.isEmpty()) throw new IllegalArgumentException("Temp suffix is required");
+        this.tempSuffix = tempSuffix;
+    }
+
+    public UploadDigest.Algorithm getVerifyAlgorithm() {
+        return verifyAlgorithm;
+    }
+
+    /**
+     * Turns on post-upload verification. The local digest is computed while uploading;
+     * the remote size is always compared, and the remote hash too when the server supports
+     * the check-file extension or a hash command is set. Remote hashes are SHA-256, so CRC32C uploads are checked by size only. Pass null to disable.
+     */
+    public void setVerifyAlgorithm(UploadDigest.Algorithm verifyAlgorithm) {
+        this.verifyAlgorithm = verifyAlgorithm;
+    }
+
+    public boolean isVerify() {
+        return verifyAlgorithm != null;
+    }
+
+    public String getRemoteHashCommand() {
+        return remoteHashCommand;
+    }
+
+    // Exec command printing the remote file's SHA-256, e.g. DEFAULT_REMOTE_SHA256_COMMAND; used when check-file is unavailable, null skips that fallback
+    public void setRemoteHashCommand(String remoteHashCommand) {
+        this.remoteHashCommand = remoteHashCommand;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be at least 1");
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    public void setRetryBackoffMillis(long retryBackoffMillis) {
+        this.retryBackoffMillis = Math.max(0, retryBackoffMillis);
+    }
+
+    public List<TokenBucket> getRateLimiters() {
+        return rateLimiters;
+    }
+
+    // Every bucket is charged for each chunk sent, e.g. a global cap plus a per-host cap
+    public void addRateLimiter(TokenBucket bucket) {
+        if (bucket != null) rateLimiters.add(bucket);
+    }
+
+    public List<TransferMeter> getTransferMeters() {
+        return transferMeters;
+    }
+
+    // Meters record the bytes actually sent, for throughput reporting
+    public void addTransferMeter(TransferMeter meter) {
+        if (meter != null) transferMeters.add(meter);
+    }
+
+    boolean isThrottled() {
+        return !rateLimiters.isEmpty() || !transferMeters.isEmpty();
+    }
+}
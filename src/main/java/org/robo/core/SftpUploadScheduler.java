@@ -0,0 +1,211 @@
+package org.robo.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Queues uploads by priority class and runs them on a fixed set of workers under
+ * a global and optional per-host bandwidth cap.
+ *
+ * <p>The queue is weighted fair: each job gets a virtual finish tag of
+ * {@code max(now, last tag of its class) + size / class weight}, and the smallest tag
+ * runs next. Small urgent files therefore overtake large bulk files instead of
+ * waiting behind them, while bulk files still make progress.</p>
+ */
+public class SftpUploadScheduler implements AutoCloseable {
+
+    private final SftpSessionPool pool;
+    private final boolean ownsPool;
+    private final TokenBucket globalBucket;
+    private final Map<String, TokenBucket> hostBuckets = new ConcurrentHashMap<>();
+    private final TransferMeter globalMeter = new TransferMeter();
+    private final Map<String, TransferMeter> hostMeters = new ConcurrentHashMap<>();
+    private final PriorityQueue<Job> queue = new PriorityQueue<>();
+    private final Map<UploadPriority, Double> lastFinishTag = new EnumMap<>(UploadPriority.class);
+    private final List<Thread> workers = new ArrayList<>();
+    private double virtualTime;
+    private long sequence;
+    private int active;
+    private boolean closed;
+
+    // globalBytesPerSecond of zero or less means no global cap
+    public SftpUploadScheduler(int workerCount, long globalBytesPerSecond) {
+        this(workerCount, globalBytesPerSecond, new SftpSessionPool(Math.max(1, workerCount),
+                SftpSessionPool.DEFAULT_IDLE_TIMEOUT_MS, SftpSessionPool.DEFAULT_KEEP_ALIVE_MS,
+                SftpSessionPool.DEFAULT_CONNECT_TIMEOUT_MS, SftpSessionPool.DEFAULT_BORROW_TIMEOUT_MS), true);
+    }
+
+    public SftpUploadScheduler(int workerCount, long globalBytesPerSecond, SftpSessionPool pool) {
+        this(workerCount, globalBytesPerSecond, pool, false);
+    }
+
+    private SftpUploadScheduler(int workerCount, long globalBytesPerSecond, SftpSessionPool pool, boolean ownsPool) {
+        if (workerCount < 1) throw new IllegalArgumentException("Worker count must be at least 1");
+        this.pool = Objects.requireNonNull(pool, "Session pool is required");
+        this.ownsPool = ownsPool;
+        this.globalBucket = new TokenBucket(globalBytesPerSecond);
+        for (int i = 0; i < workerCount; i++) {
+            Thread t = new Thread(this::workLoop, "sftp-scheduler-" + (i + 1));
+            t.setDaemon(true);
+            workers.add(t);
+            t.start();
+        }
+    }
+
+    public void setGlobalLimit(long bytesPerSecond) {
+        globalBucket.setRate(bytesPerSecond, bytesPerSecond);
+    }
+
+    // Caps the bandwidth of all uploads to the host; zero or less removes the cap
+    public void setHostLimit(String host, long bytesPerSecond) {
+        hostBuckets.computeIfAbsent(host, h -> new TokenBucket(bytesPerSecond)).setRate(bytesPerSecond, bytesPerSecond);
+    }
+
+    public CompletableFuture<String> submit(SftpTarget target, File localFile, String remoteDir, UploadPriority priority) {
+        return submit(target, localFile, remoteDir, localFile.getName(), priority, SftpUploadOptions.defaults());
+    }
+
+    /**
+     * Queues an upload. The future completes with the upload digest (null unless
+     * verification is on) or exceptionally with the upload error.
+     */
+    public CompletableFuture<String> submit(SftpTarget target, File localFile, String remoteDir, String remoteFileName,
+                                           UploadPriority priority, SftpUploadOptions options) {
+        Objects.requireNonNull(target, "Target is required");
+        Objects.requireNonNull(localFile, "Local file is required");
+        UploadPriority cls = priority == null ? UploadPriority.NORMAL : priority;
+
+        SftpUploadOptions jobOptions = (options == null ? SftpUploadOptions.defaults() : options).copy();
+        jobOptions.addRateLimiter(globalBucket);
+        // unlimited until setHostLimit is called, which also applies to already queued jobs
+        jobOptions.addRateLimiter(hostBuckets.computeIfAbsent(target.getHost(), h -> new TokenBucket(0)));
+        jobOptions.addTransferMeter(globalMeter);
+        jobOptions.addTransferMeter(hostMeters.computeIfAbsent(target.getHost(), h -> new TransferMeter()));
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("Scheduler is closed");
+            double cost = Math.max(1, localFile.length() / 1024d) / cls.getWeight();
+            double start = Math.max(virtualTime, lastFinishTag.getOrDefault(cls, 0d));
+            double finish = start + cost;
+            lastFinishTag.put(cls, finish);
+            queue.add(new Job(target, localFile, remoteDir, remoteFileName, cls, jobOptions, future, start, finish, sequence++));
+            notifyAll();
+        }
+        return future;
+    }
+
+    private void workLoop() {
+        while (true) {
+            Job job;
+            synchronized (this) {
+                while (queue.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                job = queue.poll();
+                if (job == null) return;
+                virtualTime = Math.max(virtualTime, job.startTag);
+                active++;
+            }
+            try {
+                job.future.complete(SftpUtil.upload(pool, job.target, job.localFile, job.remoteDir,
+                        job.remoteFileName, job.options));
+            } catch (Exception e) {
+                job.future.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    active--;
+                }
+            }
+        }
+    }
+
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    public synchronized int getQueueDepth(UploadPriority priority) {
+        int n = 0;
+        for (Job job : queue) if (job.priority == priority) n++;
+        return n;
+    }
+
+    public synchronized int getActiveUploads() {
+        return active;
+    }
+
+    public double getBytesPerSecond() {
+        return globalMeter.getBytesPerSecond();
+    }
+
+    public double getBytesPerSecond(String host) {
+        TransferMeter meter = hostMeters.get(host);
+        return meter == null ? 0 : meter.getBytesPerSecond();
+    }
+
+    public long getTotalBytes() {
+        return globalMeter.getTotalBytes();
+    }
+
+    // Stops accepting uploads and waits for queued ones to finish
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        for (Thread t : workers) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (ownsPool) pool.close();
+    }
+
+    private static final class Job implements Comparable<Job> {
+        private final SftpTarget target;
+        private final File localFile;
+        private final String remoteDir;
+        private final String remoteFileName;
+        private final UploadPriority priority;
+        private final SftpUploadOptions options;
+        private final CompletableFuture<String> future;
+        private final double startTag;
+        private final double finishTag;
+        private final long seq;
+
+        private Job(SftpTarget target, File localFile, String remoteDir, String remoteFileName, UploadPriority priority,
+                    SftpUploadOptions options, CompletableFuture<String> future, double startTag, double finishTag, long seq) {
+            this.target = target;
+            this.localFile = localFile;
+            this.remoteDir = remoteDir;
+            this.remoteFileName = remoteFileName;
+            this.priority = priority;
+            this.options = options;
+            this.future = future;
+            this.startTag = startTag;
+            this.finishTag = finishTag;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(Job o) {
+            int c = Double.compare(finishTag, o.finishTag);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+}
@@ -1,69 +1,340 @@
 package org.robo.core;
 
-
-import com.jcraft.jsch.*;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Set;
+import java.util.function.LongConsumer;
 
 public class SftpUtil {
 
+    // Checkpoint is rewritten at most once per this many bytes sent
+    private static final long CHECKPOINT_INTERVAL = 1024 * 1024;
+
     public static void uploadWithPassword(String host, int port, String username, String password,
                                           File localFile, String remoteDir, String remoteFileName) throws Exception {
-        JSch jsch = new JSch();
-        Session session = jsch.getSession(username, host, port);
-        session.setPassword(password);
-        java.util.Properties config = new java.util.Properties();
-        config.put("StrictHostKeyChecking", "no");
-        session.setConfig(config);
-        session.connect(10000);
-
-        Channel channel = session.openChannel("sftp");
-        channel.connect();
-        ChannelSftp sftp = (ChannelSftp) channel;
-        try {
+        upload(SftpTarget.withPassword(host, port, username, password), localFile, remoteDir, remoteFileName);
+    }
+
+    public static void uploadWithPrivateKey(String host, int port, String username, File privateKeyFile, String passphrase,
+                                            File localFile, String remoteDir, String remoteFileName) throws Exception {
+        upload(SftpTarget.withPrivateKey(host, port, username, privateKeyFile, passphrase), localFile, remoteDir, remoteFileName);
+    }
+
+    // Uploads over a pooled session, so repeated uploads to the same target reuse the SSH connection
+    public static void upload(SftpTarget target, File localFile, String remoteDir, String remoteFileName) throws Exception {
+        upload(SftpSessionPool.shared(), target, localFile, remoteDir, remoteFileName, SftpUploadOptions.defaults());
+    }
+
+    public static String upload(SftpTarget target, File localFile, String remoteDir, String remoteFileName,
+                                SftpUploadOptions options) throws Exception {
+        return upload(SftpSessionPool.shared(), target, localFile, remoteDir, remoteFileName, options);
+    }
+
+    public static void upload(SftpSessionPool pool, SftpTarget target, File localFile, String remoteDir, String remoteFileName) throws Exception {
+        upload(pool, target, localFile, remoteDir, remoteFileName, SftpUploadOptions.defaults());
+    }
+
+    // Returns the hex digest of the uploaded bytes when verification is on, otherwise null
+    public static String upload(SftpSessionPool pool, SftpTarget target, File localFile, String remoteDir, String remoteFileName,
+                                SftpUploadOptions options) throws Exception {
+        String remotePath = joinRemote(remoteDir, remoteFileName);
+        for (int attempt = 1; ; attempt++) {
             try {
-                sftp.stat(remoteDir);
-            } catch (SftpException e) {
-                // try create
-                sftp.mkdir(remoteDir);
+                return uploadOnce(pool, target, localFile, null, remoteDir, remotePath, options);
+            } catch (Exception e) {
+                if (attempt >= options.getMaxAttempts() || !pool.isConnectionFailure(e)) throw e;
+                Thread.sleep(options.getRetryBackoffMillis() * attempt);
             }
-            String remotePath = remoteDir.endsWith("/") ? remoteDir + remoteFileName : remoteDir + "/" + remoteFileName;
-            sftp.put(localFile.getAbsolutePath(), remotePath);
-        } finally {
-            sftp.exit();
-            session.disconnect();
         }
     }
 
-    public static void uploadWithPrivateKey(String host, int port, String username, File privateKeyFile, String passphrase,
-                                            File localFile, String remoteDir, String remoteFileName) throws Exception {
-        JSch jsch = new JSch();
-        if (passphrase != null && !passphrase.isEmpty()) {
-            jsch.addIdentity(privateKeyFile.getAbsolutePath(), passphrase);
-        } else {
-            jsch.addIdentity(privateKeyFile.getAbsolutePath());
-        }
-
-        Session session = jsch.getSession(username, host, port);
-        java.util.Properties config = new java.util.Properties();
-        config.put("StrictHostKeyChecking", "no");
-        session.setConfig(config);
-        session.connect(10000);
-
-        Channel channel = session.openChannel("sftp");
-        channel.connect();
-        ChannelSftp sftp = (ChannelSftp) channel;
-        try {
+    public static void upload(SftpTarget target, InputStream in, String remoteDir, String remoteFileName) throws Exception {
+        upload(SftpSessionPool.shared(), target, in, remoteDir, remoteFileName, SftpUploadOptions.defaults());
+    }
+
+    public static String upload(SftpTarget target, InputStream in, String remoteDir, String remoteFileName,
+                                SftpUploadOptions options) throws Exception {
+        return upload(SftpSessionPool.shared(), target, in, remoteDir, remoteFileName, options);
+    }
+
+    public static String upload(SftpTarget target, ReadableByteChannel channel, String remoteDir, String remoteFileName,
+                                SftpUploadOptions options) throws Exception {
+        return upload(SftpSessionPool.shared(), target, Channels.newInputStream(channel), remoteDir, remoteFileName, options);
+    }
+
+    /**
+     * Streams content straight to the remote path, so generated or encrypted data needs
+     * no local file. The stream is read to the end but not closed. Atomic, verify and
+     * throttling options apply; a stream cannot be rewound, so there is no resume and
+     * no retry.
+     */
+    public static String upload(SftpSessionPool pool, SftpTarget target, InputStream in, String remoteDir,
+                                String remoteFileName, SftpUploadOptions options) throws Exception {
+        if (in == null) throw new IllegalArgumentException("Input stream is required");
+        if (options.isResumable()) throw new IllegalArgumentException("Stream uploads cannot be resumed");
+        return uploadOnce(pool, target, null, in, remoteDir, joinRemote(remoteDir, remoteFileName), options);
+    }
+
+    // Uploads either localFile or, when it is null, the stream
+    private static String uploadOnce(SftpSessionPool pool, SftpTarget target, File localFile, InputStream stream,
+                                     String remoteDir, String remotePath, SftpUploadOptions options) throws Exception {
+        String abandoned = null;
+        try (SftpSessionPool.Lease lease = pool.borrow(target)) {
+            SftpConnection sftp = lease.connection();
+            String writePath = options.isAtomic()
+                    ? joinRemote(remoteDir, "." + fileName(remotePath) + options.getTempSuffix())
+                    : remotePath;
             try {
-                sftp.stat(remoteDir);
-            } catch (SftpException e) {
-                sftp.mkdir(remoteDir);
+                ensureDirectories(sftp, remoteDir, lease.knownDirectories());
+                UploadDigest digest = options.isVerify() ? new UploadDigest(options.getVerifyAlgorithm()) : null;
+                if (stream != null) {
+                    InputStream src = digest != null ? digest.wrap(stream) : stream;
+                    if (options.isThrottled()) {
+                        src = new ThrottledInputStream(src, options.getRateLimiters(), options.getTransferMeters());
+                    }
+                    // not closed: the caller owns the stream
+                    sftp.put(src, writePath, false, null);
+                } else if (options.isResumable()) {
+                    putResumable(sftp, localFile, writePath, digest, options);
+                } else if (digest != null || options.isThrottled()) {
+                    try (InputStream in = openSource(localFile, 0, digest, options)) {
+                        sftp.put(in, writePath, false, null);
+                    }
+                } else {
+                    try (InputStream in = new FileInputStream(localFile)) {
+                        sftp.put(in, writePath, false, null);
+                    }
+                }
+                String localHex = null;
+                if (digest != null) {
+                    localHex = digest.toHex();
+                    // verify before the rename so a bad file never appears under its final name
+                    verify(sftp, writePath, digest.getLength(), localHex, options);
+                }
+                if (options.isAtomic()) sftp.rename(writePath, remotePath);
+                return localHex;
+            } catch (SftpIntegrityException e) {
+                if (localFile != null) UploadCheckpoint.fileFor(localFile).delete();
+                try {
+                    sftp.remove(writePath);
+                } catch (Exception ignored) {
+                    // keep the integrity failure as the reported error
+                }
+                throw e;
+            } catch (Exception e) {
+                if (stream != null && options.isAtomic()) {
+                    // a stream cannot be resumed, so its partial temporary file is of no use. An
+                    // aborted put can leave unread replies on the channel, so the file is removed
+                    // over a fresh session and this one is not reused.
+                    lease.invalidate();
+                    abandoned = writePath;
+                } else if (pool.isConnectionFailure(e)) {
+                    lease.invalidate();
+                } else if (sftp.isNoSuchFile(e)) {
+                    // a cached directory may have been removed on the server
+                    lease.knownDirectories().clear();
+                }
+                throw e;
             }
-            String remotePath = remoteDir.endsWith("/") ? remoteDir + remoteFileName : remoteDir + "/" + remoteFileName;
-            sftp.put(localFile.getAbsolutePath(), remotePath);
         } finally {
-            sftp.exit();
-            session.disconnect();
+            if (abandoned != null) removeQuietly(pool, target, abandoned);
+        }
+    }
+
+    // Best effort; the upload's own failure is the one reported
+    private static void removeQuietly(SftpSessionPool pool, SftpTarget target, String remotePath) {
+        try (SftpSessionPool.Lease lease = pool.borrow(target)) {
+            try {
+                lease.connection().remove(remotePath);
+            } catch (Exception e) {
+                if (pool.isConnectionFailure(e)) lease.invalidate();
+            }
+        } catch (Exception ignored) {
+            // nothing more to clean up with
+        }
+    }
+
+    /**
+     * Creates the remote directory and any missing parents, like {@code mkdir -p}.
+     * Directories already in the session's cache cost no round trip.
+     */
+    static void ensureDirectories(SftpConnection sftp, String remoteDir, Set<String> knownDirectories) throws Exception {
+        String dir = normalizeDir(remoteDir);
+        if (dir.isEmpty() || knownDirectories.contains(dir)) return;
+        if (sftp.size(dir) >= 0) {
+            rememberWithParents(dir, knownDirectories);
+            return;
+        }
+
+        boolean absolute = dir.startsWith("/");
+        StringBuilder current = new StringBuilder(absolute ? "/" : "");
+        for (String segment : dir.split("/")) {
+            if (segment.isEmpty()) continue;
+            if (current.length() > 0 && current.charAt(current.length() - 1) != '/') current.append('/');
+            current.append(segment);
+            String path = current.toString();
+            if (knownDirectories.contains(path)) continue;
+            if (sftp.size(path) < 0) {
+                try {
+                    sftp.mkdir(path);
+                } catch (Exception mkdirError) {
+                    // another upload may have created it concurrently
+                    if (sftp.size(path) < 0) throw mkdirError;
+                }
+            }
+            knownDirectories.add(path);
         }
     }
-}
 
+    private static void rememberWithParents(String dir, Set<String> knownDirectories) {
+        String path = dir;
+        while (!path.isEmpty() && knownDirectories.add(path)) {
+            int slash = path.lastIndexOf('/');
+            if (slash > 0) path = path.substring(0, slash);
+            else path = slash == 0 && path.length() > 1 ? "/" : "";
+        }
+    }
+
+    static String joinRemote(String remoteDir, String name) {
+        if (remoteDir == null || remoteDir.isEmpty()) return name;
+        return remoteDir.endsWith("/") ? remoteDir + name : remoteDir + "/" + name;
+    }
+
+    private static String normalizeDir(String remoteDir) {
+        if (remoteDir == null) return "";
+        String dir = remoteDir.trim();
+        while (dir.length() > 1 && dir.endsWith("/")) dir = dir.substring(0, dir.length() - 1);
+        return dir.equals(".") ? "" : dir;
+    }
+
+    private static String fileName(String remotePath) {
+        return remotePath.substring(remotePath.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Continues a previous partial upload from the remote file size. The remote partial
+     * is only trusted when a matching local checkpoint exists; otherwise the upload
+     * starts over. The checkpoint is removed once the file is complete.
+     */
+    private static void putResumable(SftpConnection sftp, File localFile, String remotePath, UploadDigest digest,
+                                     SftpUploadOptions options) throws Exception {
+        long localLength = localFile.length();
+        long offset = 0;
+        UploadCheckpoint checkpoint = UploadCheckpoint.load(localFile, remotePath);
+        if (checkpoint != null) {
+            long remoteSize = sftp.size(remotePath);
+            if (remoteSize >= 0 && remoteSize <= localLength) offset = remoteSize;
+        }
+        if (offset == localLength && checkpoint != null) {
+            if (digest != null) {
+                try (InputStream in = digest.wrap(new FileInputStream(localFile))) {
+                    in.skip(localLength);
+                }
+            }
+            checkpoint.delete();
+            return;
+        }
+
+        UploadCheckpoint progress = UploadCheckpoint.start(localFile, remotePath, offset);
+        progress.save();
+
+        try (InputStream src = openSource(localFile, offset, digest, options)) {
+            // append writes at the current remote size, which is the offset we positioned to
+            sftp.put(src, remotePath, offset > 0, new CheckpointMonitor(progress, offset));
+        }
+        progress.delete();
+    }
+
+    // Local file positioned at offset, digested from byte zero and throttled from offset
+    private static InputStream openSource(File localFile, long offset, UploadDigest digest,
+                                          SftpUploadOptions options) throws IOException {
+        FileInputStream in = new FileInputStream(localFile);
+        try {
+            InputStream src = in;
+            if (digest != null) {
+                // read through the already-sent prefix so the digest still covers the whole file
+                src = digest.wrap(in);
+                src.skip(offset);
+            } else if (offset > 0) {
+                in.getChannel().position(offset);
+            }
+            if (options.isThrottled()) {
+                src = new ThrottledInputStream(src, options.getRateLimiters(), options.getTransferMeters());
+            }
+            return src;
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Compares the remote file against what was sent: size always, then, for a SHA-256
+     * verify, the remote SHA-256 from the check-file extension where the transport and
+     * server support it, falling back to the configured hash command over exec. The digest
+     * is skipped only when neither is available.
+     */
+    private static void verify(SftpConnection sftp, String remotePath, long expectedSize, String localHex,
+                               SftpUploadOptions options) throws Exception {
+        long remoteSize = sftp.size(remotePath);
+        if (remoteSize != expectedSize) {
+            throw new SftpIntegrityException("Integrity check failed for " + remotePath
+                    + ": remote size " + remoteSize + " != local size " + expectedSize);
+        }
+        // remote digests are SHA-256; a CRC32C digest has nothing to compare with, so size alone decides
+        if (options.getVerifyAlgorithm() != UploadDigest.Algorithm.SHA256) return;
+        String remoteHex = sftp.checkFileHash(remotePath, "sha256");
+        if (remoteHex == null && options.getRemoteHashCommand() != null) {
+            remoteHex = remoteHash(sftp, options.getRemoteHashCommand(), remotePath);
+        }
+        if (remoteHex != null && !remoteHex.equalsIgnoreCase(localHex)) {
+            throw new SftpIntegrityException("Integrity check failed for " + remotePath
+                    + ": remote digest " + remoteHex + " != local digest " + localHex);
+        }
+    }
+
+    // Runs the hash command over exec; null when the server refuses exec or the output is unusable
+    private static String remoteHash(SftpConnection sftp, String commandTemplate, String remotePath) {
+        String command = String.format(commandTemplate, "'" + remotePath.replace("'", "'\\''") + "'");
+        try {
+            String output = sftp.exec(command);
+            if (output == null || output.trim().isEmpty()) return null;
+            String hex = output.trim().split("\\s+")[0];
+            return hex.matches("[0-9a-fA-F]+") ? hex : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static final class CheckpointMonitor implements LongConsumer {
+        private final UploadCheckpoint checkpoint;
+        private long sent;
+        private long lastSaved;
+
+        private CheckpointMonitor(UploadCheckpoint checkpoint, long offset) {
+            this.checkpoint = checkpoint;
+            this.sent = offset;
+            this.lastSaved = offset;
+        }
+
+        @Override
+        public void accept(long count) {
+            sent += count;
+            if (sent - lastSaved >= CHECKPOINT_INTERVAL) {
+                try {
+                    checkpoint.update(sent);
+                } catch (IOException e) {
+                    // best effort: resume trusts the remote size, the byte count is informational
+                }
+                lastSaved = sent;
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package org.robo.core;
+
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.connection.channel.direct.Session;
+import net.schmizz.sshj.sftp.FileAttributes;
+import net.schmizz.sshj.sftp.OpenMode;
+import net.schmizz.sshj.sftp.PacketType;
+import net.schmizz.sshj.sftp.RemoteFile;
+import net.schmizz.sshj.sftp.Response;
+import net.schmizz.sshj.sftp.SFTPClient;
+import net.schmizz.sshj.sftp.SFTPEngine;
+import net.schmizz.sshj.sftp.SFTPException;
+import net.schmizz.sshj.transport.verification.PromiscuousVerifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * sshj-backed transport. Writes are pipelined: up to {@code maxUnconfirmedWrites}
+ * packets are in flight before the first acknowledgement is awaited, so a single
+ * upload is no longer limited to one packet per round trip.
+ */
+public class SshjSftpTransport implements SftpTransport {
+
+    public static final int DEFAULT_MAX_UNCONFIRMED_WRITES = 16;
+
+    private final int maxUnconfirmedWrites;
+
+    public SshjSftpTransport() {
+        this(DEFAULT_MAX_UNCONFIRMED_WRITES);
+    }
+
+    public SshjSftpTransport(int maxUnconfirmedWrites) {
+        if (maxUnconfirmedWrites < 1) throw new IllegalArgumentException("maxUnconfirmedWrites must be at least 1");
+        this.maxUnconfirmedWrites = maxUnconfirmedWrites;
+    }
+
+    @Override
+    public String getName() {
+        return "sshj";
+    }
+
+    @Override
+    public SftpConnection connect(SftpTarget target, int connectTimeoutMillis, int keepAliveMillis) throws IOException {
+        SSHClient ssh = new SSHClient();
+        // same policy as the JSch transport (StrictHostKeyChecking=no)
+        ssh.addHostKeyVerifier(new PromiscuousVerifier());
+        ssh.setConnectTimeout(connectTimeoutMillis);
+        if (keepAliveMillis > 0) {
+            ssh.getConnection().getKeepAlive().setKeepAliveInterval(Math.max(1, keepAliveMillis / 1000));
+        }
+        try {
+            ssh.connect(target.getHost(), target.getPort());
+            if (target.usesPrivateKey()) {
+                String keyPath = target.getPrivateKeyFile().getAbsolutePath();
+                String passphrase = target.getPassphrase();
+                ssh.authPublickey(target.getUsername(), passphrase != null && !passphrase.isEmpty()
+                        ? ssh.loadKeys(keyPath, passphrase) : ssh.loadKeys(keyPath));
+            } else {
+                ssh.authPassword(target.getUsername(), target.getPassword());
+            }
+            return new Connection(ssh, ssh.newSFTPClient(), maxUnconfirmedWrites);
+        } catch (IOException | RuntimeException e) {
+            try {
+                ssh.close();
+            } catch (IOException ignored) {
+                // report the connect failure
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isConnectionFailure(Exception e) {
+        if (e instanceof SFTPException) {
+            // a status code means the server answered; only the connection-loss codes are fatal
+            Response.StatusCode code = ((SFTPException) e).getStatusCode();
+            return code == null || code == Response.StatusCode.UNKNOWN
+                    || code == Response.StatusCode.NO_CONNECTION || code == Response.StatusCode.CONNECITON_LOST;
+        }
+        return true;
+    }
+
+    private static final class Connection implements SftpConnection {
+        private static final long EXEC_TIMEOUT_SECONDS = 5;
+
+        private final SSHClient ssh;
+        private final SFTPClient sftp;
+        private final int maxUnconfirmedWrites;
+
+        private Connection(SSHClient ssh, SFTPClient sftp, int maxUnconfirmedWrites) {
+            this.ssh = ssh;
+            this.sftp = sftp;
+            this.maxUnconfirmedWrites = maxUnconfirmedWrites;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return ssh.isConnected() && ssh.isAuthenticated();
+        }
+
+        @Override
+        public void probe() throws IOException {
+            sftp.canonicalize(".");
+        }
+
+        @Override
+        public long size(String path) throws IOException {
+            FileAttributes attrs = sftp.statExistence(path);
+            return attrs == null ? -1 : attrs.getSize();
+        }
+
+        @Override
+        public void mkdir(String path) throws IOException {
+            sftp.mkdir(path);
+        }
+
+        @Override
+        public void put(InputStream in, String path, boolean append, LongConsumer progress) throws IOException {
+            Set<OpenMode> modes = append
+                    ? EnumSet.of(OpenMode.WRITE, OpenMode.CREAT)
+                    : EnumSet.of(OpenMode.WRITE, OpenMode.CREAT, OpenMode.TRUNC);
+            try (RemoteFile file = sftp.open(path, modes)) {
+                long offset = append ? file.length() : 0;
+                SFTPEngine engine = sftp.getSFTPEngine();
+                // largest payload that still fits one channel packet
+                int bufferSize = engine.getSubsystem().getRemoteMaxPacketSize() - file.getOutgoingPacketOverhead();
+                byte[] buf = new byte[Math.max(8192, bufferSize)];
+                try (OutputStream out = file.new RemoteFileOutputStream(offset, maxUnconfirmedWrites)) {
+                    int n;
+                    while ((n = in.read(buf)) > 0) {
+                        out.write(buf, 0, n);
+                        if (progress != null) progress.accept(n);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Uses posix-rename@openssh.com when offered, which replaces the target atomically.
+         * Plain SFTP rename refuses to overwrite, so otherwise an existing target is removed first.
+         */
+        @Override
+        public void rename(String from, String to) throws IOException {
+            SFTPEngine engine = sftp.getSFTPEngine();
+            if (engine.supportsServerExtension("posix-rename", "openssh.com")) {
+                engine.request(engine.newExtendedRequest("posix-rename@openssh.com").putString(from).putString(to))
+                        .retrieve(engine.getTimeoutMs(), TimeUnit.MILLISECONDS)
+                        .ensureStatusPacketIsOK();
+                return;
+            }
+            try {
+                sftp.rename(from, to);
+            } catch (SFTPException e) {
+                if (size(to) < 0) throw e;
+                sftp.rm(to);
+                sftp.rename(from, to);
+            }
+        }
+
+        @Override
+        public void remove(String path) throws IOException {
+            sftp.rm(path);
+        }
+
+        @Override
+        public String exec(String command) throws IOException {
+            try (Session session = ssh.startSession()) {
+                Session.Command cmd = session.exec(command);
+                String output = new String(cmd.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                cmd.join(EXEC_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                Integer status = cmd.getExitStatus();
+                return status != null && status == 0 ? output : null;
+            }
+        }
+
+        /**
+         * Asks the server to hash the file itself via the check-file-name extension.
+         * Servers do not reliably advertise it, so the request is simply tried.
+         */
+        @Override
+        public String checkFileHash(String path, String algorithm) {
+            SFTPEngine engine = sftp.getSFTPEngine();
+            try {
+                Response response = engine.request(engine.newExtendedRequest("check-file-name")
+                                .putString(path).putString(algorithm).putUInt64(0).putUInt64(0).putUInt32(0))
+                        .retrieve(engine.getTimeoutMs(), TimeUnit.MILLISECONDS);
+                response.ensurePacketTypeIs(PacketType.EXTENDED_REPLY);
+                response.readString();
+                if (!algorithm.equalsIgnoreCase(response.readString())) return null;
+                byte[] hash = new byte[response.available()];
+                if (hash.length == 0) return null;
+                response.readRawBytes(hash);
+                // the draft sends the hash raw; some servers (Apache MINA) wrap it as an SSH string
+                int start = 0;
+                if (hash.length > 4 && ((hash[0] & 0xff) << 24 | (hash[1] & 0xff) << 16
+                        | (hash[2] & 0xff) << 8 | (hash[3] & 0xff)) == hash.length - 4) start = 4;
+                StringBuilder sb = new StringBuilder();
+                for (int i = start; i < hash.length; i++) sb.append(String.format("%02x", hash[i]));
+                return sb.toString();
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean isNoSuchFile(Exception e) {
+            return e instanceof SFTPException && ((SFTPException) e).getStatusCode() == Response.StatusCode.NO_SUCH_FILE;
+        }
+
+        @Override
+        public void close() {
+            try {
+                sftp.close();
+            } catch (IOException ignored) {
+                // closing the SSH connection below releases the channel anyway
+            }
+            try {
+                ssh.close();
+            } catch (IOException ignored) {
+                // already disconnected
+            }
+        }
+    }
+}
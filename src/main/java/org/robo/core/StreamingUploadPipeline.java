@@ -0,0 +1,452 @@
+package org.robo.core;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates, encrypts, Base64-encodes and uploads in one pass without writing any
+ * intermediate file. Record generation runs on the calling thread and writes through
+ * a CipherOutputStream and a Base64 encoder into a bounded chunk queue; a second
+ * thread drains the queue into {@link SftpUtil#upload(SftpSessionPool, SftpTarget, InputStream, String, String, SftpUploadOptions)}.
+ * When the upload falls behind, the queue fills and generation blocks, so memory stays
+ * at roughly {@code chunkCount * chunkSize} however large the payload is.
+ *
+ * <p>The encrypted output is the same as generating a file and running
+ * {@link CryptoUtil#encryptFileAES_CBC} on it.</p>
+ */
+public class StreamingUploadPipeline {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    public static final int DEFAULT_CHUNK_COUNT = 8;
+
+    /** The generation stage: writes the plaintext payload. */
+    public interface RecordSource {
+        void writeTo(Writer out) throws Exception;
+    }
+
+    private final SftpTarget target;
+    private final String remoteDir;
+    private final String remoteFileName;
+    private SftpSessionPool pool = SftpSessionPool.shared();
+    private SftpUploadOptions options = SftpUploadOptions.defaults();
+    private byte[] keyBytes;
+    private byte[] ivBytes;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int chunkCount = DEFAULT_CHUNK_COUNT;
+
+    public StreamingUploadPipeline(SftpTarget target, String remoteDir, String remoteFileName) {
+        this.target = Objects.requireNonNull(target, "Target is required");
+        this.remoteDir = remoteDir;
+        this.remoteFileName = Objects.requireNonNull(remoteFileName, "Remote file name is required");
+    }
+
+    // Same parameters as CryptoUtil.encryptFileAES_CBC; without a key the plaintext is uploaded as is
+    public void setEncryption(byte[] keyBytes, byte[] ivBytes) {
+        this.keyBytes = keyBytes;
+        this.ivBytes = ivBytes;
+    }
+
+    public void setPool(SftpSessionPool pool) {
+        this.pool = Objects.requireNonNull(pool, "Session pool is required");
+    }
+
+    /**
+     * Resumable options are not supported, as for any stream upload. The upload is always
+     * atomic: an aborted run leaves at most a hidden temporary file, never a truncated one
+     * under the final name.
+     */
+    public void setOptions(SftpUploadOptions options) {
+        this.options = Objects.requireNonNull(options, "Options are required");
+    }
+
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1024) throw new IllegalArgumentException("Chunk size must be at least 1024 bytes");
+        this.chunkSize = chunkSize;
+    }
+
+    // Number of chunks buffered between the encoder and the upload before generation blocks
+    public void setChunkCount(int chunkCount) {
+        if (chunkCount < 1) throw new IllegalArgumentException("Chunk count must be at least 1");
+        this.chunkCount = chunkCount;
+    }
+
+    // One generated scenario string, as the Generate button produces it
+    public static RecordSource scenario(File excelFile, String sheetName, String scenarioName, Set<String> encodeFields) {
+        return out -> out.write(ExcelProcessor.processExcel(excelFile, sheetName, scenarioName, encodeFields));
+    }
+
+    // Records separated by newlines; the iterator may generate them lazily
+    public static RecordSource lines(Iterator<String> records) {
+        return out -> {
+            boolean first = true;
+            while (records.hasNext()) {
+                if (!first) out.write('\n');
+                out.write(records.next());
+                first = false;
+            }
+        };
+    }
+
+    public Result run(RecordSource source) throws Exception {
+        Objects.requireNonNull(source, "Record source is required");
+        if (options.isResumable()) throw new IllegalArgumentException("Stream uploads cannot be resumed");
+        SftpUploadOptions uploadOptions = options.copy();
+        uploadOptions.setAtomic(true);
+        ChunkPipe pipe = new ChunkPipe(chunkSize, chunkCount);
+        long started = System.nanoTime();
+
+        CompletableFuture<String> upload = new CompletableFuture<>();
+        Thread uploader = new Thread(() -> {
+            try {
+                upload.complete(SftpUtil.upload(pool, target, pipe.input, remoteDir, remoteFileName, uploadOptions));
+            } catch (Throwable e) {
+                upload.completeExceptionally(e);
+            } finally {
+                pipe.abort();
+            }
+        }, "sftp-pipeline-upload");
+        uploader.setDaemon(true);
+        uploader.start();
+
+        TimedOutputStream sink = new TimedOutputStream(pipe.output);
+        TimedOutputStream encodeStage = null;
+        TimedOutputStream encryptStage = null;
+        OutputStream head = sink;
+        CipherPool.Lease cipher = null;
+        CountingOutputStream plain;
+        try {
+            if (keyBytes != null) {
+                cipher = CryptoUtil.aesCipher(Cipher.ENCRYPT_MODE, keyBytes, ivBytes);
+                encodeStage = new TimedOutputStream(Base64.getEncoder().wrap(sink));
+                encryptStage = new TimedOutputStream(new CipherOutputStream(encodeStage, cipher.cipher()));
+                head = encryptStage;
+            }
+            plain = new CountingOutputStream(head);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(plain, StandardCharsets.UTF_8), chunkSize);
+            source.writeTo(writer);
+            // only a successful close sends end-of-stream; on failure the upload is aborted instead
+            writer.close();
+        } catch (Exception e) {
+            pipe.abort();
+            // an upload failure surfaces here as a broken pipe, so prefer the upload's own error
+            if (upload.isCompletedExceptionally()) rethrowUploadFailure(upload);
+            // the upload stops within one poll of the abort; wait so its temporary file is gone
+            awaitQuietly(upload);
+            throw e;
+        } finally {
+            if (cipher != null) cipher.close();
+        }
+        long producerNanos = System.nanoTime() - started;
+
+        String digest;
+        try {
+            digest = upload.get();
+        } catch (ExecutionException e) {
+            rethrowUploadFailure(upload);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - started;
+
+        long headNanos = encryptStage != null ? encryptStage.nanos : sink.nanos;
+        long encryptNanos = encryptStage != null ? encryptStage.nanos - encodeStage.nanos : 0;
+        long encodeNanos = encodeStage != null ? encodeStage.nanos - sink.nanos : 0;
+        return new Result(plain.count, sink.bytes, digest, elapsed, producerNanos - headNanos, encryptNanos,
+                encodeNanos, pipe.blockedPutNanos, elapsed - pipe.blockedTakeNanos);
+    }
+
+    private static void awaitQuietly(CompletableFuture<String> upload) {
+        try {
+            upload.join();
+        } catch (CompletionException | CancellationException e) {
+            // the generation failure is the one reported
+        }
+    }
+
+    private static void rethrowUploadFailure(CompletableFuture<String> upload) throws Exception {
+        try {
+            upload.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Per-stage timings of one run. Stage times are exclusive: encryption time does not
+     * include the Base64 or upload time it waited on.
+     */
+    public static final class Result {
+        private final long plaintextBytes;
+        private final long uploadedBytes;
+        private final String digest;
+        private final long elapsedNanos;
+        private final long generateNanos;
+        private final long encryptNanos;
+        private final long encodeNanos;
+        private final long backpressureNanos;
+        private final long uploadNanos;
+
+        private Result(long plaintextBytes, long uploadedBytes, String digest, long elapsedNanos, long generateNanos,
+                       long encryptNanos, long encodeNanos, long backpressureNanos, long uploadNanos) {
+            this.plaintextBytes = plaintextBytes;
+            this.uploadedBytes = uploadedBytes;
+            this.digest = digest;
+            this.elapsedNanos = elapsedNanos;
+            this.generateNanos = generateNanos;
+            this.encryptNanos = encryptNanos;
+            this.encodeNanos = encodeNanos;
+            this.backpressureNanos = backpressureNanos;
+            this.uploadNanos = uploadNanos;
+        }
+
+        public long getPlaintextBytes() {
+            return plaintextBytes;
+        }
+
+        public long getUploadedBytes() {
+            return uploadedBytes;
+        }
+
+        // Digest of the uploaded bytes when verification was on, otherwise null
+        public String getDigest() {
+            return digest;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public long getGenerateNanos() {
+            return generateNanos;
+        }
+
+        public long getEncryptNanos() {
+            return encryptNanos;
+        }
+
+        public long getEncodeNanos() {
+            return encodeNanos;
+        }
+
+        // Time generation spent blocked because the upload buffer was full
+        public long getBackpressureNanos() {
+            return backpressureNanos;
+        }
+
+        // Time the upload thread was busy rather than waiting for data, including connect
+        public long getUploadNanos() {
+            return uploadNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d plaintext bytes, %d uploaded in %.1f ms (generate %.1f ms, encrypt %.1f ms, base64 %.1f ms, "
+                            + "blocked on upload %.1f ms, upload %.1f ms)",
+                    plaintextBytes, uploadedBytes, elapsedNanos / 1e6, generateNanos / 1e6, encryptNanos / 1e6,
+                    encodeNanos / 1e6, backpressureNanos / 1e6, uploadNanos / 1e6);
+        }
+    }
+
+    // Measures the time spent inside writes, which includes every stage downstream of it
+    private static final class TimedOutputStream extends FilterOutputStream {
+        private long nanos;
+        private long bytes;
+
+        private TimedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long t0 = System.nanoTime();
+            out.write(b);
+            bytes++;
+            nanos += System.nanoTime() - t0;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long t0 = System.nanoTime();
+            out.write(b, off, len);
+            bytes += len;
+            nanos += System.nanoTime() - t0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // closing flushes the cipher's final block and the Base64 padding downstream
+            long t0 = System.nanoTime();
+            out.close();
+            nanos += System.nanoTime() - t0;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Bounded single-producer, single-consumer byte pipe. Unlike PipedInputStream it
+     * hands over whole chunks. Either side can abort the other; a side blocked on the
+     * queue wakes every 100 ms to check for that.
+     */
+    private static final class ChunkPipe {
+        private static final byte[] EOF = new byte[0];
+
+        private final BlockingQueue<byte[]> queue;
+        private final int chunkSize;
+        private volatile boolean aborted;
+        private long blockedPutNanos;
+        private long blockedTakeNanos;
+        private final OutputStream output;
+        private final InputStream input;
+
+        private ChunkPipe(int chunkSize, int chunkCount) {
+            this.chunkSize = chunkSize;
+            this.queue = new ArrayBlockingQueue<>(chunkCount);
+            // created after chunkSize is set, since PipeOutput sizes its buffer from it
+            this.output = new PipeOutput();
+            this.input = new PipeInput();
+        }
+
+        private void abort() {
+            aborted = true;
+        }
+
+        private final class PipeOutput extends OutputStream {
+            private byte[] chunk = new byte[chunkSize];
+            private int filled;
+            private boolean closed;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                while (len > 0) {
+                    int n = Math.min(len, chunk.length - filled);
+                    System.arraycopy(b, off, chunk, filled, n);
+                    filled += n;
+                    off += n;
+                    len -= n;
+                    if (filled == chunk.length) sendChunk();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) return;
+                closed = true;
+                if (filled > 0) sendChunk();
+                put(EOF);
+            }
+
+            private void sendChunk() throws IOException {
+                put(chunk);
+                chunk = new byte[chunkSize];
+                filled = 0;
+            }
+
+            private void put(byte[] data) throws IOException {
+                byte[] payload = data == EOF || filled == data.length ? data : Arrays.copyOf(data, filled);
+                long t0 = System.nanoTime();
+                try {
+                    while (!queue.offer(payload, 100, TimeUnit.MILLISECONDS)) {
+                        if (aborted) throw new IOException("Upload stage stopped");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the upload stage");
+                } finally {
+                    blockedPutNanos += System.nanoTime() - t0;
+                }
+            }
+        }
+
+        private final class PipeInput extends InputStream {
+            private byte[] current;
+            private int pos;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                if (current == null || pos == current.length) {
+                    if (current == EOF) return -1;
+                    current = take();
+                    pos = 0;
+                    if (current == EOF) return -1;
+                }
+                int n = Math.min(len, current.length - pos);
+                System.arraycopy(current, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+
+            private byte[] take() throws IOException {
+                long t0 = System.nanoTime();
+                try {
+                    byte[] next;
+                    while ((next = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                        if (aborted) throw new IOException("Generation stage stopped");
+                    }
+                    return next;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the generation stage");
+                } finally {
+                    blockedTakeNanos += System.nanoTime() - t0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.robo.core;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.List;
+
+/**
+ * Input stream that charges every read against one or more token buckets and
+ * records it on transfer meters. Wrapping the upload source throttles the SFTP
+ * put without touching the transport.
+ */
+public final class ThrottledInputStream extends FilterInputStream {
+
+    private final List<TokenBucket> buckets;
+    private final List<TransferMeter> meters;
+
+    public ThrottledInputStream(InputStream in, List<TokenBucket> buckets, List<TransferMeter> meters) {
+        super(in);
+        this.buckets = buckets == null ? List.of() : List.copyOf(buckets);
+        this.meters = meters == null ? List.of() : List.copyOf(meters);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) charge(1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) charge(n);
+        return n;
+    }
+
+    private void charge(int n) throws InterruptedIOException {
+        try {
+            for (TokenBucket bucket : buckets) bucket.acquire(n);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Upload interrupted while throttled");
+        }
+        for (TransferMeter meter : meters) meter.add(n);
+    }
+}
@@ -0,0 +1,54 @@
+package org.robo.core;
+
+/**
+ * Token bucket bandwidth limiter. Callers reserve bytes up front and sleep off any
+ * debt, so a burst larger than the bucket is allowed but paid for by waiting.
+ * A rate of zero or less means unlimited.
+ */
+public final class TokenBucket {
+
+    private long bytesPerSecond;
+    private long capacity;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    public TokenBucket(long bytesPerSecond) {
+        this(bytesPerSecond, bytesPerSecond);
+    }
+
+    public TokenBucket(long bytesPerSecond, long burstBytes) {
+        setRate(bytesPerSecond, burstBytes);
+        this.tokens = capacity;
+    }
+
+    public synchronized void setRate(long bytesPerSecond, long burstBytes) {
+        refill();
+        this.bytesPerSecond = bytesPerSecond;
+        this.capacity = Math.max(1, burstBytes);
+        tokens = Math.min(tokens, capacity);
+    }
+
+    public synchronized long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public void acquire(long bytes) throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            if (bytesPerSecond <= 0) return;
+            refill();
+            tokens -= bytes;
+            if (tokens >= 0) return;
+            waitNanos = (long) (-tokens * 1_000_000_000d / bytesPerSecond);
+        }
+        Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (bytesPerSecond > 0) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * bytesPerSecond / 1_000_000_000d);
+        }
+        lastRefill = now;
+    }
+}
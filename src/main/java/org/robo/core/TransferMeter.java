@@ -0,0 +1,41 @@
+package org.robo.core;
+
+/**
+ * Counts bytes transferred and reports a rate over a sliding window of one-second slots.
+ */
+public final class TransferMeter {
+
+    private static final int WINDOW_SECONDS = 5;
+    // the window's completed seconds plus the one still being filled
+    private static final int SLOTS = WINDOW_SECONDS + 1;
+
+    private final long[] slots = new long[SLOTS];
+    private final long[] slotSecond = new long[SLOTS];
+    private long totalBytes;
+
+    public synchronized void add(long bytes) {
+        long second = System.currentTimeMillis() / 1000;
+        int i = (int) (second % SLOTS);
+        if (slotSecond[i] != second) {
+            slotSecond[i] = second;
+            slots[i] = 0;
+        }
+        slots[i] += bytes;
+        totalBytes += bytes;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    // Average over the last full window, excluding the current partial second
+    public synchronized double getBytesPerSecond() {
+        long now = System.currentTimeMillis() / 1000;
+        long sum = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            long age = now - slotSecond[i];
+            if (age >= 1 && age <= WINDOW_SECONDS) sum += slots[i];
+        }
+        return sum / (double) WINDOW_SECONDS;
+    }
+}
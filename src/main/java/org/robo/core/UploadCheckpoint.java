@@ -0,0 +1,99 @@
+package org.robo.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Local record of a partially sent file, stored next to it as {@code <name>.sftp-checkpoint}.
+ * A resumed upload only trusts the remote partial file when the checkpoint matches
+ * the same remote path and the local file has not changed since.
+ */
+public final class UploadCheckpoint {
+
+    public static final String SUFFIX = ".sftp-checkpoint";
+
+    private final File checkpointFile;
+    private final String remotePath;
+    private final long localLength;
+    private final long localLastModified;
+    private long bytesSent;
+
+    private UploadCheckpoint(File checkpointFile, String remotePath, long localLength, long localLastModified, long bytesSent) {
+        this.checkpointFile = checkpointFile;
+        this.remotePath = remotePath;
+        this.localLength = localLength;
+        this.localLastModified = localLastModified;
+        this.bytesSent = bytesSent;
+    }
+
+    public static File fileFor(File localFile) {
+        return new File(localFile.getAbsoluteFile().getParentFile(), localFile.getName() + SUFFIX);
+    }
+
+    public static UploadCheckpoint start(File localFile, String remotePath, long bytesSent) {
+        return new UploadCheckpoint(fileFor(localFile), remotePath, localFile.length(), localFile.lastModified(), bytesSent);
+    }
+
+    // Returns the checkpoint for this file and remote path, or null if missing, unreadable or stale
+    public static UploadCheckpoint load(File localFile, String remotePath) {
+        File cp = fileFor(localFile);
+        if (!cp.isFile()) return null;
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(cp)) {
+            props.load(in);
+            UploadCheckpoint loaded = new UploadCheckpoint(cp,
+                    props.getProperty("remotePath"),
+                    Long.parseLong(props.getProperty("localLength")),
+                    Long.parseLong(props.getProperty("localLastModified")),
+                    Long.parseLong(props.getProperty("bytesSent")));
+            boolean matches = remotePath.equals(loaded.remotePath)
+                    && loaded.localLength == localFile.length()
+                    && loaded.localLastModified == localFile.lastModified();
+            return matches ? loaded : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public String getRemotePath() {
+        return remotePath;
+    }
+
+    public long getLocalLength() {
+        return localLength;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public void update(long bytesSent) throws IOException {
+        this.bytesSent = bytesSent;
+        save();
+    }
+
+    public void save() throws IOException {
+        Properties props = new Properties();
+        props.setProperty("remotePath", remotePath);
+        props.setProperty("localLength", Long.toString(localLength));
+        props.setProperty("localLastModified", Long.toString(localLastModified));
+        props.setProperty("bytesSent", Long.toString(bytesSent));
+        // write then move so a crash never leaves a truncated checkpoint
+        File tmp = new File(checkpointFile.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            props.store(out, "RoboSFTP upload checkpoint");
+        }
+        Files.move(tmp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public void delete() {
+        checkpointFile.delete();
+    }
+}
@@ -0,0 +1,99 @@
+package org.robo.core;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32C;
+
+/**
+ * Running digest of the bytes read from a local file while they are uploaded,
+ * so verification needs no second pass over the file.
+ */
+public final class UploadDigest {
+
+    public enum Algorithm { SHA256, CRC32C }
+
+    private final Algorithm algorithm;
+    private final MessageDigest messageDigest;
+    private final CRC32C crc;
+    private long length;
+
+    public UploadDigest(Algorithm algorithm) {
+        this.algorithm = algorithm;
+        if (algorithm == Algorithm.SHA256) {
+            try {
+                this.messageDigest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+            this.crc = null;
+        } else {
+            this.messageDigest = null;
+            this.crc = new CRC32C();
+        }
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public void update(byte[] buf, int off, int len) {
+        if (messageDigest != null) messageDigest.update(buf, off, len);
+        else crc.update(buf, off, len);
+        length += len;
+    }
+
+    // Number of bytes digested so far
+    public long getLength() {
+        return length;
+    }
+
+    // Lower-case hex of the digest; completes a SHA-256 digest, so call once at the end
+    public String toHex() {
+        if (messageDigest != null) {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : messageDigest.digest()) sb.append(String.format("%02x", b));
+            return sb.toString();
+        }
+        return String.format("%08x", crc.getValue());
+    }
+
+    // Feeds everything read through the returned stream into this digest
+    public InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) update(new byte[]{(byte) b}, 0, 1);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) update(b, off, n);
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                // skipped bytes would be missing from the digest, so read through them instead
+                byte[] buf = new byte[8192];
+                long skipped = 0;
+                while (skipped < n) {
+                    int r = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+                    if (r < 0) break;
+                    skipped += r;
+                }
+                return skipped;
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package org.robo.core;
+
+/**
+ * Priority classes for {@link SftpUploadScheduler}. The weight is the class's share
+ * of the fair queue: a HIGH file of the same size is served well ahead of a BULK one.
+ */
+public enum UploadPriority {
+    HIGH(16),
+    NORMAL(4),
+    BULK(1);
+
+    private final int weight;
+
+    UploadPriority(int weight) {
+        this.weight = weight;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+}
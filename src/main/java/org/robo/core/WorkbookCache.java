@@ -0,0 +1,363 @@
+package org.robo.core;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Parsed workbooks keyed by canonical path and validated against the file's size and
+ * last-modified time on every access, so a file changed on disk is re-read automatically.
+ * Least recently used workbooks are dropped once the estimated heap of all cached
+ * workbooks exceeds the budget.
+ *
+ * <p>Access to one workbook is serialised; different workbooks can be used in parallel.
+ * Callers of {@link #read} must not modify the workbook, only {@link #update} may.</p>
+ *
+ * <p>A workbook that is evicted, invalidated or replaced by a newer version is closed once
+ * the last callback still using it returns, so it is never closed under a caller.</p>
+ */
+public final class WorkbookCache {
+
+    // share of the maximum heap the shared cache may fill
+    public static final double DEFAULT_HEAP_FRACTION = 0.25;
+    // rough heap used by the XSSF DOM per byte of uncompressed XML in the package
+    static final int DOM_BYTES_PER_XML_BYTE = 4;
+
+    private static WorkbookCache shared;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private long hits;
+    private long misses;
+
+    public WorkbookCache(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("Cache budget cannot be negative");
+        this.maxBytes = maxBytes;
+    }
+
+    public static synchronized WorkbookCache shared() {
+        if (shared == null) shared = new WorkbookCache((long) (Runtime.getRuntime().maxMemory() * DEFAULT_HEAP_FRACTION));
+        return shared;
+    }
+
+    public interface WorkbookFunction<T> {
+        T apply(Workbook workbook) throws IOException;
+    }
+
+    public interface ModelFunction<M, T> {
+        T apply(Workbook workbook, M model) throws IOException;
+    }
+
+    // Runs fn against the cached (or freshly parsed) workbook; fn must not modify it
+    public <T> T read(File file, WorkbookFunction<T> fn) throws IOException {
+        Entry entry = acquire(file);
+        try {
+            synchronized (entry) {
+                return fn.apply(entry.workbook);
+            }
+        } finally {
+            release(entry);
+        }
+    }
+
+    /**
+     * Value derived from the workbook, e.g. a compiled template, computed once per version
+     * of the file and dropped with the workbook when the file changes.
+     */
+    public <T> T model(File file, String key, WorkbookFunction<T> builder) throws IOException {
+        return read(file, key, builder, (workbook, model) -> model);
+    }
+
+    // Like model(), but fn also gets the workbook, both under one lock and from the same version
+    @SuppressWarnings("unchecked")
+    public <M, T> T read(File file, String key, WorkbookFunction<M> builder, ModelFunction<M, T> fn) throws IOException {
+        Entry entry = acquire(file);
+        try {
+            synchronized (entry) {
+                Object model = entry.models.get(key);
+                if (model == null) {
+                    model = builder.apply(entry.workbook);
+                    entry.models.put(key, model);
+                }
+                return fn.apply(entry.workbook, (M) model);
+            }
+        } finally {
+            release(entry);
+        }
+    }
+
+    /**
+     * Like model(), for a workbook handed to a callback of this cache and used only inside
+     * it, e.g. helpers shared by several templates of one file. Built each time if the
+     * workbook is not cached, such as one larger than the budget.
+     */
+    public <T> T model(Workbook workbook, String key, WorkbookFunction<T> builder) throws IOException {
+        Entry entry = entryOf(workbook);
+        if (entry == null) return builder.apply(workbook);
+        synchronized (entry) {
+            @SuppressWarnings("unchecked")
+            T model = (T) entry.models.get(key);
+            if (model == null) {
+                model = builder.apply(workbook);
+                entry.models.put(key, model);
+            }
+            return model;
+        }
+    }
+
+    /**
+     * Lets fn modify the workbook, then writes it back to the file. The cached copy is
+     * re-stamped with the new size and time, so the next read does not parse it again;
+     * if anything fails the entry is dropped instead.
+     */
+    public <T> T update(File file, WorkbookFunction<T> fn) throws IOException {
+        Entry entry = acquire(file);
+        try {
+            synchronized (entry) {
+                boolean ok = false;
+                try {
+                    T result = fn.apply(entry.workbook);
+                    try (FileOutputStream fos = new FileOutputStream(entry.file)) {
+                        entry.workbook.write(fos);
+                    }
+                    entry.models.clear();
+                    synchronized (this) {
+                        entry.size = entry.file.length();
+                        entry.lastModified = entry.file.lastModified();
+                    }
+                    ok = true;
+                    return result;
+                } finally {
+                    if (!ok) remove(entry);
+                }
+            }
+        } finally {
+            release(entry);
+        }
+    }
+
+    // True if the current version of the file is cached, without loading it otherwise
+    public boolean contains(File file) throws IOException {
+        File canonical = file.getCanonicalFile();
+        long size = canonical.length();
+        long lastModified = canonical.lastModified();
+        synchronized (this) {
+            Entry e = entries.get(canonical.getPath());
+            return e != null && e.size == size && e.lastModified == lastModified;
+        }
+    }
+
+    // True if the file's workbook is within the budget, i.e. read() or update() would keep it cached
+    public boolean fits(File file) {
+        return estimateHeap(file, file.length()) <= maxBytes;
+    }
+
+    public void invalidate(File file) throws IOException {
+        String key = file.getCanonicalPath();
+        List<Entry> dropped = new ArrayList<>(1);
+        synchronized (this) {
+            Entry e = entries.remove(key);
+            if (e != null) {
+                totalBytes -= e.estimatedBytes;
+                retire(e, dropped);
+            }
+        }
+        closeAll(dropped);
+    }
+
+    public void clear() {
+        List<Entry> dropped = new ArrayList<>();
+        synchronized (this) {
+            for (Entry e : entries.values()) retire(e, dropped);
+            entries.clear();
+            totalBytes = 0;
+        }
+        closeAll(dropped);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getEstimatedBytes() {
+        return totalBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // The entry for the current version of the file, counted as in use until release()
+    private Entry acquire(File file) throws IOException {
+        File canonical = file.getCanonicalFile();
+        if (!canonical.isFile()) throw new FileNotFoundException(canonical.getPath());
+        String key = canonical.getPath();
+        // stat before parsing, so a change during the parse shows up as stale next time
+        long size = canonical.length();
+        long lastModified = canonical.lastModified();
+        List<Entry> dropped = new ArrayList<>(1);
+        synchronized (this) {
+            Entry e = entries.get(key);
+            if (e != null && e.size == size && e.lastModified == lastModified) {
+                hits++;
+                e.users++;
+                return e;
+            }
+            if (e != null) {
+                entries.remove(key);
+                totalBytes -= e.estimatedBytes;
+                retire(e, dropped);
+            }
+            misses++;
+        }
+        closeAll(dropped);
+
+        Entry loaded = load(canonical, size, lastModified);
+        try {
+            synchronized (this) {
+                Entry raced = entries.get(key);
+                if (raced != null && raced.size == size && raced.lastModified == lastModified) {
+                    raced.users++;
+                    retire(loaded, dropped);
+                    return raced;
+                }
+                if (raced != null) {
+                    entries.remove(key);
+                    totalBytes -= raced.estimatedBytes;
+                    retire(raced, dropped);
+                }
+                loaded.users++;
+                // a workbook larger than the whole budget is used once and not kept
+                if (loaded.estimatedBytes <= maxBytes) {
+                    entries.put(key, loaded);
+                    totalBytes += loaded.estimatedBytes;
+                    evict(dropped);
+                } else {
+                    loaded.removed = true;
+                }
+                return loaded;
+            }
+        } finally {
+            closeAll(dropped);
+        }
+    }
+
+    private void release(Entry entry) {
+        boolean close;
+        synchronized (this) {
+            close = --entry.users == 0 && entry.removed;
+        }
+        if (close) closeQuietly(entry);
+    }
+
+    // the cache holds a handful of workbooks, so a scan beats a second index
+    private synchronized Entry entryOf(Workbook workbook) {
+        for (Entry e : entries.values()) {
+            if (e.workbook == workbook) return e;
+        }
+        return null;
+    }
+
+    private void evict(List<Entry> dropped) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry e = it.next();
+            it.remove();
+            totalBytes -= e.estimatedBytes;
+            retire(e, dropped);
+        }
+    }
+
+    // only called by a user of the entry, whose release() closes it
+    private synchronized void remove(Entry entry) {
+        String key = entry.file.getPath();
+        if (entries.get(key) == entry) {
+            entries.remove(key);
+            totalBytes -= entry.estimatedBytes;
+            entry.removed = true;
+        }
+    }
+
+    // Caller holds the cache lock and has taken e out of the map; idle entries go to dropped
+    private static void retire(Entry e, List<Entry> dropped) {
+        e.removed = true;
+        if (e.users == 0) dropped.add(e);
+    }
+
+    // Outside the cache lock: nothing can reach a removed, idle entry any more
+    private static void closeAll(List<Entry> dropped) {
+        for (Entry e : dropped) closeQuietly(e);
+        dropped.clear();
+    }
+
+    private static void closeQuietly(Entry entry) {
+        try {
+            entry.workbook.close();
+        } catch (IOException ignored) {
+            // a workbook read from a stream holds no file handles; nothing is left to release
+        }
+    }
+
+    private static Entry load(File file, long size, long lastModified) throws IOException {
+        Workbook workbook;
+        try (FileInputStream fis = new FileInputStream(file)) {
+            workbook = new XSSFWorkbook(fis);
+        }
+        return new Entry(file, size, lastModified, workbook, estimateHeap(file, size));
+    }
+
+    // Uncompressed part sizes come from the zip directory, so nothing is inflated
+    static long estimateHeap(File file, long fileSize) {
+        long xmlBytes = 0;
+        try (ZipFile zip = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> parts = zip.entries();
+            while (parts.hasMoreElements()) {
+                long n = parts.nextElement().getSize();
+                xmlBytes += n > 0 ? n : 0;
+            }
+        } catch (IOException e) {
+            // XLSX parts usually compress about 10:1
+            xmlBytes = fileSize * 10;
+        }
+        return Math.max(fileSize, xmlBytes * DOM_BYTES_PER_XML_BYTE);
+    }
+
+    private static final class Entry {
+        private final File file;
+        private final Workbook workbook;
+        private final long estimatedBytes;
+        private final Map<String, Object> models = new HashMap<>();
+        private long size;
+        private long lastModified;
+        // guarded by the cache lock
+        private int users;
+        private boolean removed;
+
+        private Entry(File file, long size, long lastModified, Workbook workbook, long estimatedBytes) {
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.workbook = workbook;
+            this.estimatedBytes = estimatedBytes;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package org.robo.core;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Appends rows to one sheet of an XLSX file by rewriting the package part by part, without
+ * building an {@link org.apache.poi.xssf.usermodel.XSSFWorkbook}. A SAX pass over the sheet
+ * finds its last row; the sheet XML is then copied byte for byte with the new rows, as
+ * inline strings, spliced in before the end of sheetData, and the dimension element widened
+ * to cover them. The shared strings table and every other part are copied unchanged, and
+ * the result atomically replaces the original file once it has been written completely.
+ */
+final class XlsxRowAppender {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // the ref attribute of a start tag, not one that merely ends in "ref"
+    private static final Pattern REF_ATTRIBUTE = Pattern.compile("(?<=\\s)ref\\s*=\\s*(\"[^\"]*\"|'[^']*')");
+
+    private XlsxRowAppender() {
+    }
+
+    /**
+     * Each row maps a 0-based column index to its text and is written after the last existing
+     * row of the sheet, in list order. Fails if the sheet does not exist.
+     */
+    static void append(File file, String sheetName, List<SortedMap<Integer, String>> rows) throws IOException {
+        String sheetEntry = sheetEntryName(file, sheetName);
+        Path target = file.getAbsoluteFile().toPath();
+        Path tmp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+        boolean ok = false;
+        try {
+            try {
+                // createTempFile makes an owner-only file; keep the workbook's own permissions
+                Files.setPosixFilePermissions(tmp, Files.getPosixFilePermissions(target));
+            } catch (UnsupportedOperationException ignored) {
+                // not a POSIX file system
+            }
+            try (ZipFile zip = new ZipFile(file);
+                 ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE))) {
+                ZipEntry sheet = zip.getEntry(sheetEntry);
+                if (sheet == null) throw new IOException("Missing part " + sheetEntry + " in " + file);
+                SheetEnd end = new SheetEnd();
+                try (InputStream in = zip.getInputStream(sheet)) {
+                    XlsxStreamReader.parse(in, end);
+                }
+                if (end.qName == null) throw new IOException("No sheetData in " + sheetEntry);
+                byte[] newRows = rowsXml(end.qName, end.lastRow, rows);
+                String dimension = end.dimensionQName == null ? null : dimensionRef(end.dimensionRef, end.lastRow, rows);
+
+                Enumeration<? extends ZipEntry> parts = zip.entries();
+                while (parts.hasMoreElements()) {
+                    ZipEntry part = parts.nextElement();
+                    out.putNextEntry(new ZipEntry(part.getName()));
+                    try (InputStream in = zip.getInputStream(part)) {
+                        if (part.getName().equals(sheetEntry)) {
+                            // splice works a byte at a time, which the deflater must not see unbuffered
+                            BufferedOutputStream sheetOut = new BufferedOutputStream(out, BUFFER_SIZE);
+                            splice(new BufferedInputStream(in, BUFFER_SIZE), sheetOut, end.qName, newRows,
+                                    end.dimensionQName, dimension);
+                            sheetOut.flush();
+                        } else {
+                            in.transferTo(out);
+                        }
+                    }
+                    out.closeEntry();
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            ok = true;
+        } finally {
+            if (!ok) Files.deleteIfExists(tmp);
+        }
+    }
+
+    // zip entry of the sheet's XML part, e.g. "xl/worksheets/sheet2.xml"
+    private static String sheetEntryName(File file, String sheetName) throws IOException {
+        OPCPackage pkg;
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+        } catch (OpenXML4JException | RuntimeException e) {
+            throw new IOException("Cannot open workbook " + file, e);
+        }
+        try {
+            XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) new XSSFReader(pkg).getSheetsData();
+            while (it.hasNext()) {
+                it.next().close();
+                if (it.getSheetName().equalsIgnoreCase(sheetName)) {
+                    return it.getSheetPart().getPartName().getName().substring(1);
+                }
+            }
+            throw new IllegalArgumentException("Sheet not found: " + sheetName);
+        } catch (OpenXML4JException e) {
+            throw new IOException("Cannot read workbook " + file, e);
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    /**
+     * Copies the sheet XML and inserts rowsXml just before the sheetData end tag, expanding a
+     * self-closing sheetData if the sheet has no rows. If dimensionQName is set, the ref of
+     * that element, which comes before sheetData, is replaced by dimensionRef. '<' cannot
+     * occur in XML text or attribute values, so the first "&lt;qName" followed by a delimiter
+     * is the element.
+     */
+    static void splice(InputStream in, OutputStream out, String qName, byte[] rowsXml,
+                       String dimensionQName, String dimensionRef) throws IOException {
+        if (dimensionQName != null) {
+            byte[] attrs = copyStartTag(in, out, ("<" + dimensionQName).getBytes(StandardCharsets.UTF_8));
+            if (attrs == null) throw new IOException("No dimension start tag");
+            String tag = new String(attrs, StandardCharsets.UTF_8);
+            out.write(REF_ATTRIBUTE.matcher(tag).replaceFirst("ref=\"" + dimensionRef + "\"").getBytes(StandardCharsets.UTF_8));
+            out.write('>');
+        }
+
+        // up to and including the sheetData start tag
+        byte[] close = ("</" + qName).getBytes(StandardCharsets.UTF_8);
+        byte[] attrs = copyStartTag(in, out, ("<" + qName).getBytes(StandardCharsets.UTF_8));
+        if (attrs == null) throw new IOException("No sheetData start tag");
+        int n = attrs.length;
+        while (n > 0 && isXmlSpace(attrs[n - 1])) n--;
+        if (n > 0 && attrs[n - 1] == '/') {
+            // <sheetData/>: written out as a start tag, the rows and an end tag
+            out.write(attrs, 0, n - 1);
+            out.write('>');
+            out.write(rowsXml);
+            out.write(close);
+            out.write('>');
+            in.transferTo(out);
+            return;
+        }
+        out.write(attrs);
+        out.write('>');
+
+        // rows go in front of the sheetData end tag, the rest is copied as is
+        if (!copyUntil(in, out, close, false)) throw new IOException("No sheetData end tag");
+        out.write(rowsXml);
+        out.write(close);
+        in.transferTo(out);
+    }
+
+    /**
+     * Copies up to and including the "&lt;qName" that opens the element and returns the rest
+     * of its start tag without the closing '>', which is left for the caller to write; null
+     * if the element is not found.
+     */
+    private static byte[] copyStartTag(InputStream in, OutputStream out, byte[] open) throws IOException {
+        while (true) {
+            if (!copyUntil(in, out, open)) return null;
+            int b = in.read();
+            if (b != '>' && b != '/' && !isXmlSpace(b)) {
+                // a longer name such as sheetDataX, keep looking
+                if (b >= 0) out.write(b);
+                continue;
+            }
+            ByteArrayOutputStream held = new ByteArrayOutputStream();
+            while (b != '>') {
+                if (b < 0) throw new IOException("Unterminated start tag " + new String(open, StandardCharsets.UTF_8));
+                held.write(b);
+                b = in.read();
+            }
+            return held.toByteArray();
+        }
+    }
+
+    private static boolean copyUntil(InputStream in, OutputStream out, byte[] pattern) throws IOException {
+        return copyUntil(in, out, pattern, true);
+    }
+
+    /**
+     * Copies bytes up to the pattern, which starts with '<' and has no other '<', and writes
+     * the pattern itself only if includePattern is set.
+     */
+    private static boolean copyUntil(InputStream in, OutputStream out, byte[] pattern, boolean includePattern) throws IOException {
+        int matched = 0;
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == pattern[matched]) {
+                if (++matched == pattern.length) {
+                    if (includePattern) out.write(pattern);
+                    return true;
+                }
+                continue;
+            }
+            if (matched > 0) {
+                out.write(pattern, 0, matched);
+                matched = b == pattern[0] ? 1 : 0;
+                if (matched == 1) continue;
+            }
+            out.write(b);
+        }
+        return false;
+    }
+
+    private static boolean isXmlSpace(int b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static byte[] rowsXml(String sheetDataQName, int lastRow, List<SortedMap<Integer, String>> rows) {
+        int colon = sheetDataQName.indexOf(':');
+        String prefix = colon < 0 ? "" : sheetDataQName.substring(0, colon + 1);
+        StringBuilder sb = new StringBuilder();
+        int rowNumber = lastRow;
+        for (Map<Integer, String> row : rows) {
+            rowNumber++;
+            sb.append('<').append(prefix).append("row r=\"").append(rowNumber).append("\">");
+            for (Map.Entry<Integer, String> cell : row.entrySet()) {
+                sb.append('<').append(prefix).append("c r=\"").append(columnName(cell.getKey())).append(rowNumber)
+                        .append("\" t=\"inlineStr\"><").append(prefix).append("is><").append(prefix)
+                        .append("t xml:space=\"preserve\">");
+                appendEscaped(sb, cell.getValue());
+                sb.append("</").append(prefix).append("t></").append(prefix).append("is></").append(prefix).append("c>");
+            }
+            sb.append("</").append(prefix).append("row>");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The sheet's dimension widened to the rows appended after lastRow, e.g. A1:I100 with two
+     * rows up to column K gives A1:K102. An unreadable ref is replaced by the new rows' range.
+     */
+    static String dimensionRef(String ref, int lastRow, List<SortedMap<Integer, String>> rows) {
+        int firstCol = Integer.MAX_VALUE;
+        int lastCol = -1;
+        for (SortedMap<Integer, String> row : rows) {
+            if (row.isEmpty()) continue;
+            firstCol = Math.min(firstCol, row.firstKey());
+            lastCol = Math.max(lastCol, row.lastKey());
+        }
+        // rows without cells do not change the used range
+        if (lastCol < 0 && ref != null) return ref;
+        if (lastCol < 0) firstCol = lastCol = 0;
+        // 0-based, so the first new row is lastRow
+        int firstRow = lastRow;
+        int endRow = lastRow + rows.size() - 1;
+        CellRangeAddress old;
+        try {
+            old = ref == null ? null : CellRangeAddress.valueOf(ref);
+        } catch (RuntimeException e) {
+            old = null;
+        }
+        if (old != null && old.getFirstRow() >= 0 && old.getFirstColumn() >= 0) {
+            firstRow = Math.min(firstRow, old.getFirstRow());
+            endRow = Math.max(endRow, old.getLastRow());
+            firstCol = Math.min(firstCol, old.getFirstColumn());
+            lastCol = Math.max(lastCol, old.getLastColumn());
+        }
+        return new CellRangeAddress(firstRow, endRow, firstCol, lastCol).formatAsString();
+    }
+
+    // 0 -> A, 25 -> Z, 26 -> AA
+    static String columnName(int column) {
+        StringBuilder sb = new StringBuilder();
+        for (int c = column + 1; c > 0; c = (c - 1) / 26) sb.append((char) ('A' + (c - 1) % 26));
+        return sb.reverse().toString();
+    }
+
+    // control characters are not allowed in XML; Excel writes them as _xHHHH_
+    private static void appendEscaped(StringBuilder sb, String value) {
+        if (value == null) return;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&': sb.append("&amp;"); break;
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                case '\t': case '\n': sb.append(c); break;
+                case '\r': sb.append("&#13;"); break;
+                default:
+                    if (c < 0x20 || c == 0xFFFE || c == 0xFFFF) sb.append(String.format("_x%04X_", (int) c));
+                    else sb.append(c);
+            }
+        }
+    }
+
+    /** Finds the dimension, the last row number and the qualified name of sheetData, then stops. */
+    private static final class SheetEnd extends DefaultHandler {
+        private String qName;
+        private int lastRow;
+        private boolean inSheetData;
+        private String dimensionQName;
+        private String dimensionRef;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attrs) {
+            if (!inSheetData && "dimension".equals(localName)) {
+                dimensionQName = qName;
+                dimensionRef = attrs.getValue("ref");
+            } else if ("sheetData".equals(localName)) {
+                this.qName = qName;
+                inSheetData = true;
+            } else if (inSheetData && "row".equals(localName)) {
+                String r = attrs.getValue("r");
+                // a row without r follows the previous one
+                lastRow = r == null ? lastRow + 1 : Integer.parseInt(r);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if ("sheetData".equals(localName)) throw new XlsxStreamReader.StopParsing();
+        }
+    }
+}
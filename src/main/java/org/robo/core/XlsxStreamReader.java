@@ -0,0 +1,314 @@
+package org.robo.core;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads sheet names and the first column of a sheet straight from the XLSX parts with SAX,
+ * without building an {@link org.apache.poi.xssf.usermodel.XSSFWorkbook}. Only workbook.xml,
+ * the requested sheet and the shared strings that column actually uses are parsed, so the
+ * dropdowns fill quickly even for large multi-sheet templates.
+ *
+ * <p>Values are formatted like {@link CellReader}: trimmed, dates as
+ * yyyy-MM-dd and formulas from their cached result.</p>
+ */
+final class XlsxStreamReader {
+
+    private XlsxStreamReader() {
+    }
+
+    static List<String> sheetNames(File file) throws IOException {
+        OPCPackage pkg = open(file);
+        try {
+            List<String> names = new ArrayList<>();
+            XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) new XSSFReader(pkg).getSheetsData();
+            while (it.hasNext()) {
+                it.next().close();
+                names.add(it.getSheetName());
+            }
+            return names;
+        } catch (OpenXML4JException e) {
+            throw new IOException("Cannot read workbook " + file, e);
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    /**
+     * Non-blank column A values of a sheet below its first row, or an empty list when the
+     * sheet does not exist. Sheet names match case-insensitively, as in Workbook.getSheet.
+     */
+    static List<String> firstColumn(File file, String sheetName) throws IOException {
+        OPCPackage pkg = open(file);
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (it.hasNext()) {
+                try (InputStream sheet = it.next()) {
+                    if (!it.getSheetName().equalsIgnoreCase(sheetName)) continue;
+                    FirstColumnHandler handler = new FirstColumnHandler(reader);
+                    parse(sheet, handler);
+                    return handler.resolve(pkg);
+                }
+            }
+            return Collections.emptyList();
+        } catch (OpenXML4JException e) {
+            throw new IOException("Cannot read workbook " + file, e);
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    private static OPCPackage open(File file) throws IOException {
+        try {
+            return OPCPackage.open(file, PackageAccess.READ);
+        } catch (OpenXML4JException | RuntimeException e) {
+            throw new IOException("Cannot open workbook " + file, e);
+        }
+    }
+
+    static void parse(InputStream in, DefaultHandler handler) throws IOException {
+        try {
+            XMLReader xml = XMLHelper.newXMLReader();
+            xml.setContentHandler(handler);
+            xml.parse(new InputSource(in));
+        } catch (StopParsing e) {
+            // handler has everything it needs
+        } catch (SAXException | ParserConfigurationException e) {
+            throw new IOException("Malformed sheet XML", e);
+        }
+    }
+
+    // 0-based column of a cell reference such as "AB12", or -1 if there is none
+    private static int columnOf(String ref) {
+        if (ref == null) return -1;
+        int col = 0;
+        int i = 0;
+        for (; i < ref.length(); i++) {
+            char c = ref.charAt(i);
+            if (c < 'A' || c > 'Z') break;
+            col = col * 26 + (c - 'A' + 1);
+        }
+        return i == 0 ? -1 : col - 1;
+    }
+
+    // thrown by a handler once it has read all it needs; parse() then returns normally
+    static final class StopParsing extends SAXException {
+        private static final long serialVersionUID = 1L;
+
+        StopParsing() {
+            super(null, null);
+        }
+    }
+
+    /**
+     * Collects column A of every row after the first. Shared-string cells only record their
+     * index here; the strings are looked up afterwards in one partial pass over the table.
+     */
+    private static final class FirstColumnHandler extends DefaultHandler {
+        private final XSSFReader reader;
+        private final List<Object> values = new ArrayList<>();
+        private final BitSet sharedNeeded = new BitSet();
+        private final StringBuilder text = new StringBuilder();
+        private StylesTable styles;
+        private DataFormatter formatter;
+        private boolean firstRowSeen;
+        private boolean skipRow;
+        private int column;
+        private boolean inCell;
+        private boolean collecting;
+        private boolean formula;
+        private String type;
+        private String style;
+
+        private FirstColumnHandler(XSSFReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
+            switch (localName) {
+                case "row":
+                    skipRow = !firstRowSeen;
+                    firstRowSeen = true;
+                    column = -1;
+                    break;
+                case "c":
+                    int ref = columnOf(attrs.getValue("r"));
+                    column = ref >= 0 ? ref : column + 1;
+                    inCell = column == 0 && !skipRow;
+                    type = attrs.getValue("t");
+                    style = attrs.getValue("s");
+                    formula = false;
+                    text.setLength(0);
+                    break;
+                case "f":
+                    if (inCell) formula = true;
+                    break;
+                case "v":
+                case "t":
+                    collecting = inCell;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (collecting) text.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if ("v".equals(localName) || "t".equals(localName)) {
+                collecting = false;
+            } else if ("c".equals(localName) && inCell) {
+                inCell = false;
+                add(text.toString());
+            }
+        }
+
+        private void add(String raw) throws SAXException {
+            if (raw.isEmpty()) {
+                return;
+            } else if ("s".equals(type)) {
+                int index = Integer.parseInt(raw.trim());
+                sharedNeeded.set(index);
+                values.add(index);
+            } else if ("inlineStr".equals(type) || "str".equals(type) || "d".equals(type)) {
+                values.add(raw.trim());
+            } else if ("b".equals(type)) {
+                boolean b = "1".equals(raw.trim());
+                values.add(formula ? String.valueOf(b) : (b ? "TRUE" : "FALSE"));
+            } else if ("e".equals(type)) {
+                values.add(formula ? "" : raw.trim());
+            } else {
+                try {
+                    values.add(formatNumber(Double.parseDouble(raw)));
+                } catch (NumberFormatException e) {
+                    values.add(raw.trim());
+                }
+            }
+        }
+
+        private String formatNumber(double value) throws SAXException {
+            int formatIndex = 0;
+            String formatString = "General";
+            if (style != null) {
+                XSSFCellStyle cellStyle = styles().getStyleAt(Integer.parseInt(style));
+                if (cellStyle != null) {
+                    formatIndex = cellStyle.getDataFormat();
+                    formatString = cellStyle.getDataFormatString();
+                }
+            }
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return CellReader.formatDate(DateUtil.getLocalDateTime(value));
+            }
+            if (formatter == null) formatter = new DataFormatter();
+            return formatter.formatRawCellContents(value, formatIndex, formatString).trim();
+        }
+
+        // styles.xml is small and only needed once a numeric cell has a style
+        private StylesTable styles() throws SAXException {
+            if (styles == null) {
+                try {
+                    styles = reader.getStylesTable();
+                } catch (IOException | OpenXML4JException e) {
+                    throw new SAXException("Cannot read styles", e);
+                }
+            }
+            return styles;
+        }
+
+        private List<String> resolve(OPCPackage pkg) throws IOException {
+            String[] shared = sharedNeeded.isEmpty() ? new String[0] : readSharedStrings(pkg);
+            List<String> result = new ArrayList<>(values.size());
+            for (Object v : values) {
+                String s = v instanceof Integer ? shared[(Integer) v] : (String) v;
+                if (s != null && !s.isBlank()) result.add(s);
+            }
+            return result;
+        }
+
+        private String[] readSharedStrings(OPCPackage pkg) throws IOException {
+            String[] shared = new String[sharedNeeded.length()];
+            List<PackagePart> parts = pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
+            if (parts.isEmpty()) return shared;
+            try (InputStream in = parts.get(0).getInputStream()) {
+                parse(in, new SharedStringsHandler(sharedNeeded, shared));
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Fills in the wanted entries of sharedStrings.xml and stops at the last one, so strings
+     * used only by other columns or sheets are never materialised. Phonetic runs are skipped.
+     */
+    private static final class SharedStringsHandler extends DefaultHandler {
+        private final BitSet wanted;
+        private final String[] out;
+        private final StringBuilder text = new StringBuilder();
+        private int index = -1;
+        private boolean inPhonetic;
+        private boolean collecting;
+
+        private SharedStringsHandler(BitSet wanted, String[] out) {
+            this.wanted = wanted;
+            this.out = out;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attrs) {
+            if ("si".equals(localName)) {
+                index++;
+                text.setLength(0);
+            } else if ("rPh".equals(localName)) {
+                inPhonetic = true;
+            } else if ("t".equals(localName)) {
+                collecting = !inPhonetic && wanted.get(index);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (collecting) text.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if ("t".equals(localName)) {
+                collecting = false;
+            } else if ("rPh".equals(localName)) {
+                inPhonetic = false;
+            } else if ("si".equals(localName) && wanted.get(index)) {
+                out[index] = text.toString().trim();
+                if (index == out.length - 1) throw new StopParsing();
+            }
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package org.robo.rag;
 
+import org.robo.core.IdGenerators;
+import org.robo.core.IdPool;
+
 import java.security.SecureRandom;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
@@ -22,9 +25,12 @@ public final class RagScenarioGenerator {
     private static final Map<String, String> PRIORITY_VALUES = Map.of(
             "CreatedBy", "healthgrp\\ramac0600R",
             "CreatedDate", "2023-07-27",
-            "ExternalId", "3AF815BF-307A-4CD8-960A-408DE498677A",
             "CenterCode", "KTPH_Inpatient"
     );
+    // unique per row, drawn from the shared ID pools instead of a fixed value
+    private static final String EXTERNAL_ID_HEADER = "ExternalId";
+    // explicit ID format in a field spec, e.g. "pattern:ST-####"
+    private static final String PATTERN_FORMAT = "pattern:";
     private static final List<String> FIM_MARKERS = List.of(
             "FIM admission form start", "FIM admission form end",
             "FIM discharge form start", "FIM discharge form end"
@@ -214,6 +220,11 @@ public final class RagScenarioGenerator {
             }
         }
 
+        String idSpec = identifierSpec(rec.getExcelHeader(), format, example, datatype);
+        if (idSpec != null) {
+            return IdPool.shared(idSpec).next();
+        }
+
         if (PRIORITY_VALUES.containsKey(rec.getExcelHeader())) {
             return PRIORITY_VALUES.get(rec.getExcelHeader());
         }
@@ -260,6 +271,41 @@ public final class RagScenarioGenerator {
         return rec.getExcelHeader() + "_val";
     }
 
+    /**
+     * Generator spec for identifier columns, or null for ordinary fields. A column is an
+     * identifier by its header (ExternalId, *Id, *Identifier, NRIC/FIN) or by an explicit
+     * uuid, nric or "pattern:" format; fixed, date, enum and range fields never are.
+     */
+    private static String identifierSpec(String excelHeader, String format, String example, String datatype) {
+        String header = safe(excelHeader);
+        if (EXTERNAL_ID_HEADER.equalsIgnoreCase(header)) return "uuid";
+        if (PRIORITY_VALUES.containsKey(header) || isDateField(datatype, format, header)
+                || ENUM_PATTERN.matcher(format).find() || RANGE_PATTERN.matcher(format).find()) {
+            return null;
+        }
+        String f = format.toLowerCase(Locale.ROOT);
+        if (f.startsWith(PATTERN_FORMAT)) {
+            String pattern = format.substring(PATTERN_FORMAT.length()).trim();
+            return pattern.isEmpty() ? null : "pattern:" + pattern;
+        }
+        if (f.equals("uuid") || f.equals("guid") || f.contains("nric") || f.equals("fin") || isIdentifierHeader(header)) {
+            return IdGenerators.specFor(format, example);
+        }
+        return null;
+    }
+
+    // PatientId, PatientID, Case ID, case_id, Record Identifier, NRIC/FIN; not Paid or VALID
+    private static boolean isIdentifierHeader(String header) {
+        String h = header.toLowerCase(Locale.ROOT);
+        if (h.equals("nric") || h.equals("fin") || h.equals("nric/fin") || h.endsWith("identifier")) return true;
+        if (!h.endsWith("id")) return false;
+        if (header.length() == 2) return true;
+        String suffix = header.substring(header.length() - 2);
+        char before = header.charAt(header.length() - 3);
+        return suffix.equals("Id") || suffix.equals("ID") && Character.isLowerCase(before)
+                || before == ' ' || before == '_' || before == '-';
+    }
+
     private static boolean isDateField(String datatype, String format, String header) {
         String d = safe(datatype).toLowerCase(Locale.ROOT);
         String f = safe(format).toLowerCase(Locale.ROOT);
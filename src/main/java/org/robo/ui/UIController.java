@@ -5,6 +5,7 @@ package org.robo.ui;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.robo.core.CryptoUtil;
 import org.robo.core.ExcelProcessor;
+import org.robo.core.GeneratedFileValidator;
 import org.robo.core.SftpUtil;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
@@ -64,6 +65,7 @@ public class UIController {
     @FXML public PasswordField pfAesKey;
     @FXML public TextField tfSecretKey; // AES Key input
     @FXML public TextField tfIv;        // IV input
+    @FXML public ComboBox<String> cbCipherMode;
 
 
     @FXML public TextField tfHost, tfPort, tfUser, tfPrivateKey, tfRemoteDir;
@@ -78,6 +80,7 @@ public class UIController {
     @FXML public TextArea taValidationString;
     @FXML public TextArea taValidationPreview;
     @FXML public Button btnValidateString;
+    @FXML public Button btnValidateFile;
     @FXML public Button btnClearScreens;
     @FXML public TextField tfValidationScenario;
     @FXML public TextField tfPreviewSearch;
@@ -127,6 +130,11 @@ public class UIController {
     private final LocalJsonVectorStore ragStore = new LocalJsonVectorStore();
     private final RagService ragService = new RagService(ragStore);
     private final ObjectMapper ragMapper = new ObjectMapper();
+    private static final String CIPHER_MODE_CBC = "AES-CBC (ECB if no IV)";
+    private static final String CIPHER_MODE_GCM = "AES-GCM";
+    // file validation stops after this many invalid lines
+    private static final int VALIDATION_MAX_ERRORS = 1000;
+
     private List<RagFieldRecord> lastRagRecords = new ArrayList<>();
     private final java.util.Map<String, PreviewBundle> previewBundles = new java.util.HashMap<>();
     private File depRulesFile;
@@ -138,6 +146,8 @@ public class UIController {
         btnEncrypt.setDisable(true);
         btnUpload.setDisable(true);
         progressBar.setProgress(0);
+        cbCipherMode.getItems().setAll(CIPHER_MODE_CBC, CIPHER_MODE_GCM);
+        cbCipherMode.getSelectionModel().select(CIPHER_MODE_CBC);
 
         btnChooseExcel.setOnAction(e -> {
             chooseExcel();
@@ -161,6 +171,7 @@ public class UIController {
         btnEncrypt.setOnAction(e -> encrypt());
         btnUpload.setOnAction(e -> upload());
         btnValidateString.setOnAction(e -> validateString());
+        btnValidateFile.setOnAction(e -> validateFile());
         btnClearScreens.setOnAction(e -> clearScreens());
         btnPreviewSearch.setOnAction(e -> searchPreview());
         tfPreviewSearch.setOnAction(e -> searchPreview());
@@ -306,6 +317,50 @@ public class UIController {
         new Thread(task).start();
     }
 
+    // Checks every line of a generated file and writes <file>.validation.txt next to it
+    private void validateFile() {
+        if (excelFile == null || cbSheet.getValue() == null || encodeFile == null) {
+            log("Select Excel, sheet and encode fields before validating.");
+            return;
+        }
+        FileChooser fc = new FileChooser();
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text files", "*.txt"));
+        File input = fc.showOpenDialog(null);
+        if (input == null) return;
+        String sheet = cbSheet.getValue();
+
+        btnValidateFile.setDisable(true);
+        progressBar.setProgress(-1);
+
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                try {
+                    Set<String> enc = ExcelProcessor.loadEncodeFields(encodeFile);
+                    ExcelProcessor.ExcelTemplate template = ExcelProcessor.loadTemplate(excelFile, sheet);
+                    GeneratedFileValidator.Report report = new GeneratedFileValidator(template, enc)
+                            .validate(input, VALIDATION_MAX_ERRORS);
+                    File reportFile = new File(input.getParentFile(), input.getName() + ".validation.txt");
+                    report.writeSummary(reportFile);
+                    Platform.runLater(() -> {
+                        log("Validated " + input.getName() + ": " + report.getSummary());
+                        log("Validation report: " + reportFile.getAbsolutePath());
+                    });
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    Platform.runLater(() -> log("File validation error: " + ex.getMessage()));
+                } finally {
+                    Platform.runLater(() -> {
+                        btnValidateFile.setDisable(false);
+                        progressBar.setProgress(0);
+                    });
+                }
+                return null;
+            }
+        };
+        new Thread(task).start();
+    }
+
     // --- RAG TAB ---
 
     private void initRagTab() {
@@ -1164,18 +1219,23 @@ public class UIController {
                         return null;
                     }
 
-                    // CBC mode requires IV
-                    byte[] ivBytes = null;
-                    if (!ivStr.isEmpty()) {
-                        ivBytes = ivStr.getBytes(StandardCharsets.UTF_8);
-                        if (ivBytes.length != 16) {
-                            Platform.runLater(() -> log("IV must be exactly 16 bytes (16 chars)."));
-                            return null;
+                    if (CIPHER_MODE_GCM.equals(cbCipherMode.getValue())) {
+                        // GCM generates its own nonce per file, so the IV field is not used
+                        CryptoUtil.encryptFileAES_GCM(keyBytes, lastGeneratedFile, outEnc);
+                    } else {
+                        // CBC mode requires IV
+                        byte[] ivBytes = null;
+                        if (!ivStr.isEmpty()) {
+                            ivBytes = ivStr.getBytes(StandardCharsets.UTF_8);
+                            if (ivBytes.length != 16) {
+                                Platform.runLater(() -> log("IV must be exactly 16 bytes (16 chars)."));
+                                return null;
+                            }
                         }
-                    }
 
-                    // Encrypt
-                    CryptoUtil.encryptFileAES_CBC(keyBytes, ivBytes, lastGeneratedFile, outEnc);
+                        // Encrypt
+                        CryptoUtil.encryptFileAES_CBC(keyBytes, ivBytes, lastGeneratedFile, outEnc);
+                    }
 
                     lastGeneratedFile = outEnc;
                     Platform.runLater(() -> {
@@ -1254,6 +1314,7 @@ public class UIController {
         // Encrypt only enabled after TXT generated
         btnEncrypt.setDisable(lastGeneratedFile == null);
         btnValidateString.setDisable(!(excelFile != null && cbSheet.getValue() != null && encodeFile != null));
+        btnValidateFile.setDisable(!(excelFile != null && cbSheet.getValue() != null && encodeFile != null));
 
         if (btnRagRetrieve != null) {
             boolean canRetrieveRag = ragStore.isLoaded()
@@ -0,0 +1,107 @@
+package org.robo.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The hand-written token checks in ExcelProcessor against the regex and formatter they
+ * replaced.
+ */
+class ExcelProcessorTokenTest {
+
+    // regex whitespace, every line terminator '.' stops at, and look-alikes that are neither
+    private static final char[] ALPHABET = {
+            'a', '-', ' ', '\t', '\n', '\u000B', '\f', '\r', '\u0085', '\u2028', '\u2029', '\u00A0', '\u2003'
+    };
+
+    @Test
+    void whitespaceNextToHyphenMatchesRegexForAllShortTokens() {
+        for (int length = 0; length <= 5; length++) {
+            int[] digits = new int[length];
+            char[] chars = new char[length];
+            while (true) {
+                for (int i = 0; i < length; i++) chars[i] = ALPHABET[digits[i]];
+                assertSameAsRegex(new String(chars));
+                int i = length - 1;
+                while (i >= 0 && ++digits[i] == ALPHABET.length) digits[i--] = 0;
+                if (i < 0) break;
+            }
+        }
+    }
+
+    @Test
+    void whitespaceNextToHyphenMatchesRegexForRandomTokens() {
+        Random random = new Random(42);
+        for (int n = 0; n < 200_000; n++) {
+            char[] chars = new char[1 + random.nextInt(24)];
+            for (int i = 0; i < chars.length; i++) chars[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+            assertSameAsRegex(new String(chars));
+        }
+    }
+
+    @Test
+    void whitespaceNextToHyphenAroundLineTerminators() {
+        String[] tokens = {
+                "a -b", "a- b", "a-b", "x\na -b", "a -b\nx", "a\n-b", "a-\nb", "a\r\n-b", "a -\r\nb",
+                "a\u0085 -b", "a - \u0085", "\u0085a -b", "a -b\u0085", "a\u2028-\u2029b", "a\u00A0-b", "-\n", "\n-",
+                "\r- ", " -\r", "\u0085 - \u0085", "a \u0085- b"
+        };
+        for (String token : tokens) assertSameAsRegex(token);
+    }
+
+    @Test
+    void plainDatesAreAcceptedByTheFormatter() {
+        for (int year : new int[]{0, 1900, 2000, 2023, 2024, 9999}) {
+            for (int month = 0; month <= 19; month++) {
+                for (int day = 0; day <= 39; day++) {
+                    String value = String.format("%04d-%02d-%02d", year, month, day);
+                    if (ExcelProcessor.isPlainDate(value)) assertTrue(parses(value), value);
+                }
+            }
+        }
+    }
+
+    @Test
+    void plainDateShortcutKeepsFormatterResults() {
+        // the formatter's smart resolver clamps these to the month's last day
+        for (String value : new String[]{"2023-02-30", "2024-02-30", "2023-02-29", "2023-04-31", "2024-02-31"}) {
+            assertTrue(ExcelProcessor.isPlainDate(value), value);
+            assertTrue(parses(value), value);
+        }
+        for (String value : new String[]{"2024-00-10", "2024-13-01", "2024-01-00", "2024-01-32", "2024-1-01",
+                "24-01-01", "2024/01/01", "2024-01-01 ", "+2024-01-01", "\uFF12\uFF10\uFF12\uFF14-01-01", "2024-01-0a"}) {
+            assertFalse(ExcelProcessor.isPlainDate(value), value);
+        }
+        assertEquals(LocalDate.of(2023, 2, 28), LocalDate.parse("2023-02-30", ExcelProcessor.DATE_FORMATTER));
+    }
+
+    private static void assertSameAsRegex(String token) {
+        boolean expected = token.matches(".*\\s-.*") || token.matches(".*-\\s.*");
+        assertEquals(expected, ExcelProcessor.hasWhitespaceNextToHyphen(token), () -> escape(token));
+    }
+
+    private static boolean parses(String value) {
+        try {
+            LocalDate.parse(value, ExcelProcessor.DATE_FORMATTER);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static String escape(String token) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : token.toCharArray()) {
+            if (c >= 0x20 && c < 0x7F) sb.append(c);
+            else sb.append(String.format("\\u%04X", (int) c));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,186 @@
+package org.robo.core;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XlsxRowAppenderTest {
+
+    private static final String SHEET_PART = "xl/worksheets/sheet1.xml";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendsAfterExistingRows() throws IOException {
+        File file = workbook("Main", "Name", "Amount");
+        XlsxRowAppender.append(file, "Main", List.of(row(0, "S1", 3, "x"), row(0, "S2", 1, "y")));
+
+        try (XSSFWorkbook wb = read(file)) {
+            XSSFSheet sheet = wb.getSheet("Main");
+            assertEquals(2, sheet.getLastRowNum());
+            assertEquals("Name", text(sheet, 0, 0));
+            assertEquals("S1", text(sheet, 1, 0));
+            assertEquals("x", text(sheet, 1, 3));
+            assertEquals("S2", text(sheet, 2, 0));
+            assertEquals("y", text(sheet, 2, 1));
+            assertEquals("A1:D3", sheet.getCTWorksheet().getDimension().getRef());
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(file.toPath()), files.toList(), "no temporary file is left behind");
+        }
+    }
+
+    @Test
+    void expandsSelfClosingSheetData() throws IOException {
+        File file = workbook("Main");
+        assertTrue(part(file, SHEET_PART).contains("<sheetData/>"));
+        XlsxRowAppender.append(file, "Main", List.of(row(0, "S1", 2, "z")));
+
+        try (XSSFWorkbook wb = read(file)) {
+            XSSFSheet sheet = wb.getSheet("Main");
+            assertEquals(0, sheet.getLastRowNum());
+            assertEquals("S1", text(sheet, 0, 0));
+            assertEquals("z", text(sheet, 0, 2));
+            assertEquals("A1:C1", sheet.getCTWorksheet().getDimension().getRef());
+        }
+    }
+
+    @Test
+    void keepsNamespacePrefix() throws IOException {
+        File file = workbook("Main");
+        replacePart(file, SHEET_PART, "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<x:worksheet xmlns:x=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+                + "<x:dimension ref=\"A1\"/><x:sheetData>"
+                + "<x:row r=\"1\"><x:c r=\"A1\" t=\"inlineStr\"><x:is><x:t>Name</x:t></x:is></x:c></x:row>"
+                + "</x:sheetData></x:worksheet>");
+        XlsxRowAppender.append(file, "Main", List.of(row(0, "S1", 1, "v")));
+
+        String xml = part(file, SHEET_PART);
+        assertTrue(xml.contains("<x:row r=\"2\"><x:c r=\"A2\" t=\"inlineStr\">"), xml);
+        assertTrue(xml.contains("<x:dimension ref=\"A1:B2\"/>"), xml);
+        try (XSSFWorkbook wb = read(file)) {
+            XSSFSheet sheet = wb.getSheet("Main");
+            assertEquals("Name", text(sheet, 0, 0));
+            assertEquals("S1", text(sheet, 1, 0));
+            assertEquals("v", text(sheet, 1, 1));
+        }
+    }
+
+    @Test
+    void escapesMarkupAndControlCharacters() throws IOException {
+        File file = workbook("Main", "Name");
+        String markup = "a&b<c>d \"q\" 'p'";
+        String lineBreaks = "one\r\ntwo\rthree\nfour";
+        String controls = "bell\u0007tab\tnul\u0000end\u001F";
+        XlsxRowAppender.append(file, "Main", List.of(row(0, markup, 1, lineBreaks, 2, controls)));
+
+        try (XSSFWorkbook wb = read(file)) {
+            XSSFSheet sheet = wb.getSheet("Main");
+            assertEquals(markup, text(sheet, 1, 0));
+            assertEquals(lineBreaks, text(sheet, 1, 1));
+            assertEquals(controls, text(sheet, 1, 2));
+        }
+    }
+
+    @Test
+    void leavesFileUntouchedWhenSheetIsMissing() throws IOException {
+        File file = workbook("Main", "Name");
+        byte[] before = Files.readAllBytes(file.toPath());
+        assertThrows(IllegalArgumentException.class, () -> XlsxRowAppender.append(file, "Other", List.of(row(0, "S1"))));
+        assertArrayEquals(before, Files.readAllBytes(file.toPath()));
+        try (XSSFWorkbook wb = read(file)) {
+            assertNull(wb.getSheet("Main").getRow(1));
+        }
+    }
+
+    @Test
+    void widensDimension() {
+        assertEquals("A1:K102", XlsxRowAppender.dimensionRef("A1:I100", 100, List.of(row(0, "a"), row(10, "b"))));
+        assertEquals("A1:B1", XlsxRowAppender.dimensionRef("A1", 0, List.of(row(0, "a", 1, "b"))));
+        assertEquals("B2:C4", XlsxRowAppender.dimensionRef("B2:C3", 3, List.of(row(2, "a"))));
+        assertEquals("A4", XlsxRowAppender.dimensionRef("garbage", 3, List.of(row(0, "a"))));
+        assertEquals("A1:C3", XlsxRowAppender.dimensionRef("A1:C3", 3, List.of(new TreeMap<>())));
+    }
+
+    // a workbook with one sheet whose first row holds the given headers, if any
+    private File workbook(String sheetName, String... headers) throws IOException {
+        File file = dir.resolve("book.xlsx").toFile();
+        try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file.toPath())) {
+            XSSFSheet sheet = wb.createSheet(sheetName);
+            if (headers.length > 0) {
+                Row row = sheet.createRow(0);
+                for (int c = 0; c < headers.length; c++) row.createCell(c).setCellValue(headers[c]);
+            }
+            wb.write(out);
+        }
+        return file;
+    }
+
+    private static SortedMap<Integer, String> row(Object... columnsAndValues) {
+        SortedMap<Integer, String> row = new TreeMap<>();
+        for (int i = 0; i < columnsAndValues.length; i += 2) row.put((Integer) columnsAndValues[i], (String) columnsAndValues[i + 1]);
+        return row;
+    }
+
+    private static XSSFWorkbook read(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return new XSSFWorkbook(in);
+        }
+    }
+
+    private static String text(XSSFSheet sheet, int row, int column) {
+        return sheet.getRow(row).getCell(column).getStringCellValue();
+    }
+
+    private static String part(File file, String name) throws IOException {
+        try (ZipFile zip = new ZipFile(file); InputStream in = zip.getInputStream(zip.getEntry(name))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private void replacePart(File file, String name, String xml) throws IOException {
+        Path copy = dir.resolve("copy.xlsx");
+        try (ZipFile zip = new ZipFile(file); ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(copy))) {
+            Enumeration<? extends ZipEntry> parts = zip.entries();
+            while (parts.hasMoreElements()) {
+                ZipEntry part = parts.nextElement();
+                out.putNextEntry(new ZipEntry(part.getName()));
+                if (part.getName().equals(name)) {
+                    out.write(xml.getBytes(StandardCharsets.UTF_8));
+                } else {
+                    try (InputStream in = zip.getInputStream(part)) {
+                        in.transferTo(out);
+                    }
+                }
+                out.closeEntry();
+            }
+        }
+        Files.move(copy, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}